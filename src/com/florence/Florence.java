@@ -17,8 +17,11 @@
 package com.florence;
 
 import com.florence.model.World;
-import com.florence.net.ChannelDemultiplexer;
+import com.florence.net.BlockingChannelAcceptor;
+import com.florence.net.ChannelAcceptor;
 import com.florence.net.ChannelDemultiplexerBootstrap;
+import com.florence.net.ChannelDemultiplexerGroup;
+import com.florence.net.ondemand.OnDemandServer;
 import java.net.InetSocketAddress;
 import java.util.concurrent.Executors;
 
@@ -27,16 +30,59 @@ public class Florence {
     public static final InetSocketAddress GAME_SERVER_ADDRESS = new InetSocketAddress(43594);
     public static final InetSocketAddress FTP_SERVER_ADDRESS = new InetSocketAddress(43595);
 
+    /**
+     * The system property that selects the transport, for example
+     * -Dflorence.transport=blocking.
+     */
+    public static final String TRANSPORT_PROPERTY = "florence.transport";
+
+    public enum Transport {
+
+        /**
+         * Connections are multiplexed across a small group of reactors.
+         */
+        REACTOR,
+        /**
+         * Each connection is served by threads of its own using blocking
+         * operations, virtual threads where available.
+         */
+        BLOCKING
+    }
+
     public static void main(String[] arguments) {
         try {
             World.singleton().initialize();
 
+            final Transport transport = Transport.valueOf(
+                    System.getProperty(TRANSPORT_PROPERTY, Transport.REACTOR.name()).toUpperCase());
+
             /**
              * Initializes the server responsible for transmitting game logic.
              */
-            ChannelDemultiplexerBootstrap bootstrap = new ChannelDemultiplexerBootstrap(
-                    Executors.newSingleThreadScheduledExecutor(), new ChannelDemultiplexer());
-            bootstrap.initialize(GAME_SERVER_ADDRESS);
+            switch (transport) {
+
+                case REACTOR:
+                    ChannelDemultiplexerGroup group = new ChannelDemultiplexerGroup(
+                            ChannelDemultiplexerGroup.DEFAULT_REACTOR_COUNT, ChannelDemultiplexerGroup.SelectionPolicy.LEAST_LOADED);
+                    ChannelDemultiplexerBootstrap bootstrap = new ChannelDemultiplexerBootstrap(
+                            Executors.newFixedThreadPool(group.getDemultiplexers().length + 1), new ChannelAcceptor(group));
+                    bootstrap.initialize(GAME_SERVER_ADDRESS);
+                    break;
+
+                case BLOCKING:
+                    BlockingChannelAcceptor acceptor = new BlockingChannelAcceptor();
+                    acceptor.initialize(GAME_SERVER_ADDRESS);
+                    new Thread(acceptor, "acceptor").start();
+                    break;
+            }
+            System.out.println("Serving connections with the " + transport.name().toLowerCase() + " transport.");
+
+            /**
+             * Initializes the server responsible for transmitting files on
+             * demand, on a thread of its own.
+             */
+            if (OnDemandServer.singleton().initialize(FTP_SERVER_ADDRESS))
+                new Thread(OnDemandServer.singleton(), "ondemand").start();
         } catch (Exception exception) {
             exception.printStackTrace(System.out);
         }
@@ -18,7 +18,7 @@ package com.florence.model;
 
 import com.florence.model.mob.Mob;
 import com.florence.model.player.Player;
-import com.florence.net.packet.builders.ChatboxMessagePacketBuilder;
+import com.florence.net.packet.PacketTemplates;
 
 public class WalkToActions {
 
@@ -30,7 +30,7 @@ public class WalkToActions {
 
             case NORMAL_SHORT_SLEEVE_MAN_IDENTITY:
             case NORMAL_LONG_SLEEVE_MAN_IDENTITY:
-                player.encode(new ChatboxMessagePacketBuilder("He doesn't seem interested in talking right now."));
+                player.encode(PacketTemplates.NOT_INTERESTED_MESSAGE);
                 break;
         }
     }
@@ -1,10 +1,8 @@
 package com.florence.model;
 
 import com.florence.model.player.Player;
-import com.florence.net.packet.builders.ClientConfigurationPacketBuilder;
-import com.florence.net.packet.builders.ConstructRegionPacketBuilder;
+import com.florence.net.packet.PacketTemplates;
 import com.florence.net.packet.builders.DisplayRunEnergyPacketBuilder;
-import com.florence.net.packet.builders.ChatboxMessagePacketBuilder;
 import java.util.ArrayDeque;
 import java.util.Deque;
 
@@ -99,9 +97,8 @@ public class WalkingQueue {
                 if (energy <= MINIMUM_RUN_ENERGY) {
                     if (entity instanceof Player) {
                         final Player player = (Player) entity;
-                        player.encode(new ClientConfigurationPacketBuilder(
-                                ClientConfigurationPacketBuilder.RUN_BUTTON_CONFIGURATION_INDEX, 0));
-                        player.encode(new ChatboxMessagePacketBuilder("You don't have any energy left."));
+                        player.encode(PacketTemplates.RUN_DISABLED);
+                        player.encode(PacketTemplates.NO_ENERGY_MESSAGE);
 
                         /**
                          * This user can't run anymore.
@@ -149,7 +146,7 @@ public class WalkingQueue {
                      * Update this user's regional viewport. Written directly to
                      * prevent a delay.
                      */
-                    player.encode(new ConstructRegionPacketBuilder());
+                    player.encode(Player.CONSTRUCT_REGION);
                 }
             }
         }
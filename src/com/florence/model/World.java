@@ -17,23 +17,28 @@
 package com.florence.model;
 
 import com.florence.model.player.LogoutRequest;
-import com.florence.model.player.LoginRequest;
+import com.florence.model.player.LoginQueue;
 import com.florence.model.mob.Mob;
 import com.florence.model.player.Player;
 import com.florence.model.item.ItemDefinitions;
 import com.florence.model.mob.StaticMobsDocumentParser;
 import com.florence.model.update.UpdateServiceListener;
+import com.florence.model.update.impl.FlushPlayerUpdateService;
 import com.florence.model.update.impl.MainPlayerUpdateService;
 import com.florence.model.update.impl.PostMobUpdateService;
 import com.florence.model.update.impl.PostPlayerUpdateService;
 import com.florence.model.update.impl.PreMobUpdateService;
 import com.florence.model.update.impl.PrePlayerUpdateService;
-import com.florence.net.packet.Packet;
+import com.florence.net.LoginService;
+import com.florence.net.packet.PacketBudget;
 import com.florence.net.packet.PacketDecoderTable;
+import com.florence.net.packet.PacketTemplate;
 import com.florence.task.Task;
 import com.florence.task.TaskFactory;
 import com.florence.task.impl.RestoreRunEnergyTask;
+import java.util.ArrayDeque;
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -46,7 +51,34 @@ public class World implements Runnable {
     public static final int MAXIMUM_PLAYERS = 2000;
     public static final int MAXIMUM_MOBS = 8192;
 
+    /**
+     * The time in milliseconds that a user whose connection was lost remains
+     * in the world, during which they may reconnect and resume their session.
+     */
+    public static final int RECONNECTION_GRACE_PERIOD = 30000;
+
+    /**
+     * The users a broadcast is sent to.
+     */
+    public enum Audience {
+
+        /**
+         * Every user in the world.
+         */
+        ALL,
+        /**
+         * Users in the same map region and plane as the origin.
+         */
+        REGION,
+        /**
+         * Moderators and administrators.
+         */
+        STAFF
+    }
+
     private final PacketDecoderTable packets = new PacketDecoderTable();
+    private final PacketBudget budget = new PacketBudget();
+    private final LoginService loginService = new LoginService();
     private final EntityRegistry<Player> players = new EntityRegistry<>(MAXIMUM_PLAYERS);
     private final EntityRegistry<Mob> mobs = new EntityRegistry<>(MAXIMUM_MOBS);
 
@@ -62,10 +94,10 @@ public class World implements Runnable {
             Runtime.getRuntime().availableProcessors());
 
     /**
-     * An unbounded thread-safe queue based on linked nodes. Stores user
-     * requests to be registered in the physical world.
+     * Stores user requests to be registered in the physical world, admitting
+     * a limited amount of them each cycle.
      */
-    private final ConcurrentLinkedQueue<LoginRequest> logins = new ConcurrentLinkedQueue<>();
+    private final LoginQueue logins = new LoginQueue();
 
     /**
      * An unbounded thread-safe queue based on linked nodes. Stores user
@@ -73,6 +105,18 @@ public class World implements Runnable {
      */
     private final ConcurrentLinkedQueue<LogoutRequest> logouts = new ConcurrentLinkedQueue<>();
 
+    /**
+     * The users that are online or logging in, keyed by their lower case
+     * username. Accessed by the login workers as well as the world's thread.
+     */
+    private final ConcurrentHashMap<String, Player> online = new ConcurrentHashMap<>();
+
+    /**
+     * Users whose connection was lost, in the order they were suspended. Only
+     * accessed by the world's thread.
+     */
+    private final ArrayDeque<Player> suspensions = new ArrayDeque<>();
+
     /**
      * Provides a global access point and ensures that only one instance of this
      * class file exists within the virtual machine.
@@ -92,6 +136,7 @@ public class World implements Runnable {
         player_updates.register(PrePlayerUpdateService.class, new PrePlayerUpdateService());
         player_updates.register(MainPlayerUpdateService.class, new MainPlayerUpdateService());
         player_updates.register(PostPlayerUpdateService.class, new PostPlayerUpdateService());
+        player_updates.register(FlushPlayerUpdateService.class, new FlushPlayerUpdateService());
 
         mob_updates.register(PreMobUpdateService.class, new PreMobUpdateService());
         mob_updates.register(PostMobUpdateService.class, new PostMobUpdateService());
@@ -101,35 +146,78 @@ public class World implements Runnable {
     }
 
     public boolean contains(String username) {
-        for (Player player : players) {
-            if (player == null)
-                continue;
-            if (player.getUsername().equalsIgnoreCase(username))
-                return true;
-        }
-        return false;
+        return online.containsKey(username.toLowerCase());
+    }
+
+    /**
+     * Returns the user that has claimed a username, if any.
+     *
+     * @param username The username.
+     * @return The user, or null.
+     */
+    public Player getOnline(String username) {
+        return online.get(username.toLowerCase());
+    }
+
+    public void suspend(Player player) {
+        suspensions.add(player);
+    }
+
+    public void resume(Player player) {
+        suspensions.remove(player);
+    }
+
+    /**
+     * Claims a username for a user that is logging in.
+     *
+     * @param username The username.
+     * @param player The user.
+     * @return False if the username is already claimed by another user.
+     */
+    public boolean register(String username, Player player) {
+        return online.putIfAbsent(username.toLowerCase(), player) == null;
+    }
+
+    /**
+     * Releases a username if it is still claimed by a specific user.
+     *
+     * @param username The username.
+     * @param player The user.
+     */
+    public void unregister(String username, Player player) {
+        if (username == null)
+            return;
+        online.remove(username.toLowerCase(), player);
     }
 
     @Override
     public void run() {
-        LoginRequest login;
-        while ((login = logins.poll()) != null) {
-            login.login();
-        }
+        final long start = System.nanoTime();
+        logins.process();
 
         LogoutRequest logout;
         while ((logout = logouts.poll()) != null) {
             logout.logout();
         }
 
+        /**
+         * Removes the users whose grace period has ended.
+         */
+        Player suspended;
+        while ((suspended = suspensions.peek()) != null
+                && System.currentTimeMillis() - suspended.getSuspendedAt() >= RECONNECTION_GRACE_PERIOD) {
+            suspensions.poll();
+            suspended.remove();
+        }
+
         final Iterator<Player> iterator = players.iterator();
         while (iterator.hasNext()) {
             final Player player = iterator.next();
 
-            Packet packet;
-            while ((packet = player.getPackets().poll()) != null) {
-                packets.decode(player, packet);
-            }
+            /**
+             * Handles this user's packets up to their budget for this cycle.
+             */
+            budget.drain(player, packets);
         }
 
         mob_updates.execute(PreMobUpdateService.class);
@@ -141,6 +229,53 @@ public class World implements Runnable {
 
         mob_updates.execute(PostMobUpdateService.class);
         player_updates.execute(PostPlayerUpdateService.class);
+
+        /**
+         * Writes each user's frames for this cycle in a single operation.
+         */
+        player_updates.execute(FlushPlayerUpdateService.class);
+
+        /**
+         * Slows the admission of new users if cycles are running long.
+         */
+        logins.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Sends a packet to every user in an audience. The packet is encoded once
+     * and each recipient is handed a reference to the same frame, so the cost
+     * per recipient does not depend on the packet.
+     *
+     * @param packet The packet.
+     * @param audience The audience.
+     * @param origin The user the audience is relative to. Only required for
+     * regional broadcasts.
+     */
+    public void broadcast(PacketTemplate packet, Audience audience, Player origin) {
+        for (Player player : players) {
+            if (player == null)
+                continue;
+            switch (audience) {
+
+                case REGION:
+                    final Position position = player.getPosition();
+                    final Position center = origin.getPosition();
+                    if ((position.getX() >> 6) != (center.getX() >> 6) || (position.getY() >> 6) != (center.getY() >> 6)
+                            || position.getZ() != center.getZ())
+                        continue;
+                    break;
+
+                case STAFF:
+                    if (player.getRights() < GameConstants.MODERATOR_RIGHTS)
+                        continue;
+                    break;
+            }
+            player.encode(packet);
+        }
+    }
+
+    public void broadcast(PacketTemplate packet) {
+        broadcast(packet, Audience.ALL, null);
     }
 
     public void schedule(Task task) {
@@ -151,11 +286,19 @@ public class World implements Runnable {
         return packets;
     }
 
+    public PacketBudget getBudget() {
+        return budget;
+    }
+
+    public LoginService getLoginService() {
+        return loginService;
+    }
+
     public TaskFactory getTasks() {
         return tasks;
     }
 
-    public ConcurrentLinkedQueue<LoginRequest> getLogins() {
+    public LoginQueue getLogins() {
         return logins;
     }
 
@@ -21,7 +21,7 @@ import com.florence.model.player.PlayerAnimations;
 import com.florence.model.UpdateFlags.UpdateFlag;
 import com.florence.model.content.combat.CombatConstants;
 import com.florence.model.content.combat.WeaponAnimationTable;
-import com.florence.net.packet.builders.ChatboxMessagePacketBuilder;
+import com.florence.net.packet.PacketTemplates;
 import com.florence.net.packet.builders.GameframeWidgetPacketBuilder;
 import com.florence.net.packet.builders.InterfaceTextPacketBuilder;
 import com.florence.net.packet.builders.ItemInterfacePacketBuilder;
@@ -128,7 +128,7 @@ public class EquipmentContainer extends ItemContainer {
         int stackable = 0;
         if (ItemDefinitions.getDefinitions()[index].isTwoHanded() && items[EQUIPMENT_SLOT_SHIELD] != null) {
             if (player.getInventory().available() < InventoryContainer.MINIMUM_ITEM_QUANTITY) {
-                player.encode(new ChatboxMessagePacketBuilder("You don't have the required inventory space to equip this item."));
+                player.encode(PacketTemplates.NO_SPACE_TO_EQUIP_MESSAGE);
                 return;
             }
         }
@@ -17,7 +17,7 @@
 package com.florence.model.item;
 
 import com.florence.model.player.Player;
-import com.florence.net.packet.builders.ChatboxMessagePacketBuilder;
+import com.florence.net.packet.PacketTemplates;
 import com.florence.net.packet.builders.ItemInterfacePacketBuilder;
 
 public class InventoryContainer extends ItemContainer {
@@ -61,7 +61,7 @@ public class InventoryContainer extends ItemContainer {
                  */
                 && !(contains(item.getIndex() + 1)
                 && ItemDefinitions.getDefinitions()[item.getIndex()].isNotable())) {
-            player.encode(new ChatboxMessagePacketBuilder("You don't have the required inventory space to hold this item."));
+            player.encode(PacketTemplates.NO_SPACE_TO_HOLD_MESSAGE);
             return;
         }
         for (int slot = 0; slot < capacity(); slot++) {
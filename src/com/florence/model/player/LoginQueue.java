@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2019 Dylan Vicchiarelli
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.florence.model.player;
+
+import com.florence.model.World;
+import com.florence.net.Client;
+import com.florence.net.packet.builders.ChatboxMessagePacketBuilder;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admits users into the world at a limited rate so that a burst of logins
+ * can't stall the cycles of users that are already online. The rate is
+ * reduced while recent cycles exceed their budget and recovers once they no
+ * longer do.
+ */
+public class LoginQueue {
+
+    /**
+     * The default amount of users that may be waiting to enter the world.
+     * Users beyond this are told to try again.
+     */
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    /**
+     * The default amount of users admitted per cycle.
+     */
+    public static final int DEFAULT_LOGINS_PER_CYCLE = 25;
+
+    /**
+     * The least amount of users admitted per cycle while shedding load.
+     */
+    public static final int MINIMUM_LOGINS_PER_CYCLE = 1;
+
+    /**
+     * The default duration in milliseconds that the average cycle may take
+     * before load is shed.
+     */
+    public static final int DEFAULT_CYCLE_BUDGET = World.THREAD_RATE / 2;
+
+    /**
+     * The weight given to the most recent cycle's duration in the average.
+     */
+    public static final double SMOOTHING = 0.2;
+
+    /**
+     * The least amount of cycles between two reports of a waiting user's
+     * position.
+     */
+    public static final int POSITION_INTERVAL = 5;
+
+    private final ConcurrentLinkedQueue<LoginRequest> requests = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The amount of users waiting or about to be queued. Incremented by the
+     * network's threads and decremented by the world's thread.
+     */
+    private final AtomicInteger size = new AtomicInteger();
+
+    private volatile int capacity = DEFAULT_CAPACITY;
+    private int limit = DEFAULT_LOGINS_PER_CYCLE;
+    private int budget = DEFAULT_CYCLE_BUDGET;
+
+    /**
+     * The amount of users admitted this cycle given the current load.
+     */
+    private int allowance = DEFAULT_LOGINS_PER_CYCLE;
+
+    /**
+     * The moving average of cycle durations in milliseconds.
+     */
+    private double average;
+    private long cycles;
+    private long admitted;
+    private long shed;
+
+    /**
+     * Claims a place in the queue ahead of writing a successful login
+     * response. Called by the network's threads.
+     *
+     * @return False if the queue is full and the user should try again.
+     */
+    public boolean reserve() {
+        int current;
+        do {
+            current = size.get();
+            if (current >= capacity)
+                return false;
+        } while (!size.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Queues a login for which a place has been reserved.
+     *
+     * @param request The login.
+     */
+    public void add(LoginRequest request) {
+        requests.add(request);
+    }
+
+    /**
+     * Admits as many waiting users as the current allowance permits. Called
+     * at the start of each cycle by the world's thread.
+     */
+    public void process() {
+        int count = 0;
+        LoginRequest request;
+        while (count < allowance && (request = requests.poll()) != null) {
+            size.decrementAndGet();
+            final Player player = request.getPlayer();
+            if (request.getClient().disconnected()) {
+
+                /**
+                 * This user left while waiting. A suspended user's username
+                 * remains claimed until their grace period ends.
+                 */
+                if (!request.isResumption())
+                    World.singleton().unregister(player.getUsername(), player);
+                continue;
+            }
+            request.login();
+            count++;
+        }
+        admitted += count;
+        cycles++;
+        report();
+    }
+
+    /**
+     * Tells waiting users their position in the queue once it has changed,
+     * at most once per interval each. Users are spread across the interval by
+     * their position when first seen, so that a burst of logins is not all
+     * told on the same cycle.
+     */
+    private void report() {
+        int position = 0;
+        for (LoginRequest request : requests) {
+            final Client client = request.getClient();
+            if (client.disconnected())
+                continue;
+            position++;
+            if (request.getNextReport() < 0)
+                request.setNextReport(cycles + position % POSITION_INTERVAL);
+            if (cycles < request.getNextReport() || position == request.getReportedPosition())
+                continue;
+            request.setNextReport(cycles + POSITION_INTERVAL);
+            request.setReportedPosition(position);
+            client.encode(new ChatboxMessagePacketBuilder("You are position " + position + " in the login queue."));
+            client.flush();
+        }
+    }
+
+    /**
+     * Records the duration of a cycle and adjusts the allowance. The allowance
+     * is halved while the average exceeds the budget and otherwise grows by
+     * one per cycle up to the limit.
+     *
+     * @param nanoseconds The duration.
+     */
+    public void record(long nanoseconds) {
+        final double duration = nanoseconds / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        average = cycles <= 1 ? duration : average + SMOOTHING * (duration - average);
+        if (average > budget) {
+            if (allowance > MINIMUM_LOGINS_PER_CYCLE) {
+                allowance = Math.max(MINIMUM_LOGINS_PER_CYCLE, allowance / 2);
+                shed++;
+            }
+        } else if (allowance < limit) {
+            allowance++;
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+        allowance = Math.min(allowance, limit);
+    }
+
+    public int getBudget() {
+        return budget;
+    }
+
+    public void setBudget(int budget) {
+        this.budget = budget;
+    }
+
+    public int getAllowance() {
+        return allowance;
+    }
+
+    public double getAverage() {
+        return average;
+    }
+
+    public long getAdmitted() {
+        return admitted;
+    }
+
+    public long getShed() {
+        return shed;
+    }
+
+    @Override
+    public String toString() {
+        return "LoginQueue[waiting=" + size + ", allowance=" + allowance + "/" + limit + ", average="
+                + String.format("%.1f", average) + "ms, admitted=" + admitted + ", shed=" + shed + "]";
+    }
+}
@@ -16,16 +16,85 @@
  */
 package com.florence.model.player;
 
+import com.florence.net.Client;
+
 public class LoginRequest {
 
     private Player player;
 
+    /**
+     * The connection that this login was made from.
+     */
+    private Client client;
+
+    /**
+     * Denotes if this login resumes the session of a suspended user rather
+     * than adding a new one.
+     */
+    private boolean resumption;
+
+    /**
+     * The position in the login queue that this user was last told, and the
+     * cycle from which they may be told again. Only accessed by the world's
+     * thread.
+     */
+    private int reportedPosition;
+    private long nextReport = -1;
+
     public LoginRequest(Player player) {
+        this(player, player.getClient(), false);
+    }
+
+    public LoginRequest(Player player, Client client, boolean resumption) {
         this.player = player;
+        this.client = client;
+        this.resumption = resumption;
     }
 
     public void login() {
-        player.add();
+        if (!resumption) {
+            player.add();
+            return;
+        }
+
+        /**
+         * This login took over a connection whose loss has not been handled
+         * yet, so the user is suspended now rather than once it is.
+         */
+        final Client previous = player.getClient();
+        if (!player.isSuspended() && previous != client && previous.disconnected())
+            player.suspend();
+
+        /**
+         * The grace period ended before this login was admitted. The client
+         * will reconnect and log in afresh.
+         */
+        if (!player.resume(client))
+            client.disconnect();
+    }
+
+    public Client getClient() {
+        return client;
+    }
+
+    public boolean isResumption() {
+        return resumption;
+    }
+
+    public int getReportedPosition() {
+        return reportedPosition;
+    }
+
+    public void setReportedPosition(int reportedPosition) {
+        this.reportedPosition = reportedPosition;
+    }
+
+    public long getNextReport() {
+        return nextReport;
+    }
+
+    public void setNextReport(long nextReport) {
+        this.nextReport = nextReport;
     }
 
     public Player getPlayer() {
@@ -16,15 +16,38 @@
  */
 package com.florence.model.player;
 
+import com.florence.net.Client;
+
 public class LogoutRequest {
 
     private Player player;
 
+    /**
+     * The connection that was lost.
+     */
+    private Client client;
+
     public LogoutRequest(Player player) {
+        this(player, player.getClient());
+    }
+
+    public LogoutRequest(Player player, Client client) {
         this.player = player;
+        this.client = client;
     }
 
     public void logout() {
+
+        /**
+         * This user has already resumed their session from a newer
+         * connection.
+         */
+        if (player.getClient() != client)
+            return;
+        if (player.isConnected() && !player.isLoggingOut()) {
+            player.suspend();
+            return;
+        }
         player.remove();
     }
 
@@ -26,27 +26,54 @@ import com.florence.model.content.skill.SkillSet;
 import com.florence.model.item.EquipmentContainer;
 import com.florence.model.item.InventoryContainer;
 import com.florence.net.Client;
-import com.florence.net.packet.Packet;
+import com.florence.net.packet.Message;
 import com.florence.net.packet.PacketBuilder;
-import com.florence.net.packet.builders.ClientConfigurationPacketBuilder;
-import com.florence.net.packet.builders.ChatboxMessagePacketBuilder;
-import com.florence.net.packet.builders.GameframeWidgetPacketBuilder;
+import com.florence.net.packet.PacketStatistics;
+import com.florence.net.packet.PacketTemplate;
+import com.florence.net.packet.PacketTemplates;
+import com.florence.net.packet.builders.ConstructRegionPacketBuilder;
 import com.florence.net.packet.builders.LoginDetailsPacketBuilder;
-import com.florence.net.packet.builders.LoginPacketBuilder;
 import com.florence.net.packet.builders.MobUpdatePacketBuilder;
 import com.florence.net.packet.builders.PlayerUpdatePacketBuilder;
+import com.florence.util.SpscRingBuffer;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class Player extends Entity {
 
-    private final Client client;
+    /**
+     * The connection currently serving this user. Replaced when a user
+     * resumes their session from a new connection.
+     */
+    private volatile Client client;
 
     private String username;
     private String password;
-    private boolean connected;
-    private final ConcurrentLinkedQueue<Packet> packets = new ConcurrentLinkedQueue<>();
+    private volatile boolean connected;
+
+    /**
+     * Denotes if this user's connection was lost and they remain in the world
+     * awaiting a reconnection.
+     */
+    private volatile boolean suspended;
+
+    /**
+     * The time at which this user was last suspended.
+     */
+    private long suspendedAt;
+
+    /**
+     * Denotes if this user asked to log out, in which case they are removed
+     * immediately rather than suspended.
+     */
+    private boolean loggingOut;
+
+    /**
+     * Packets received by this user's reactor, waiting to be handled on the
+     * world's thread.
+     */
+    private final SpscRingBuffer<Message> packets = new SpscRingBuffer<>(PACKET_CAPACITY, this::overflow);
+    private final PacketStatistics packetStatistics = new PacketStatistics();
     private final PlayerAnimations animations = new PlayerAnimations();
 
     /**
@@ -104,6 +131,12 @@ public class Player extends Entity {
      */
     private RegionState r_state = RegionState.REBUILDING_REGION;
 
+    /**
+     * Denotes if update frames were lost while this user was suspended, in
+     * which case their client must be resynchronized.
+     */
+    private boolean desynchronized;
+
     public enum RegionState {
 
         /**
@@ -129,6 +162,26 @@ public class Player extends Entity {
      */
     public static final int TELEPORT_BUTTON_TIME_DELAY = 4000;
 
+    /**
+     * The maximum amount of packets that can be waiting to be handled. A user
+     * that exceeds this is sending far beyond their budget and is
+     * disconnected.
+     */
+    public static final int PACKET_CAPACITY = 256;
+
+    /**
+     * Rebuilds a user's regional viewport. Shared by every user, as the
+     * packet holds no state of its own.
+     */
+    public static final ConstructRegionPacketBuilder CONSTRUCT_REGION = new ConstructRegionPacketBuilder();
+
+    /**
+     * The update packets, shared by every user as they are only ever built on
+     * the world's thread.
+     */
+    private static final PlayerUpdatePacketBuilder PLAYER_UPDATE = new PlayerUpdatePacketBuilder();
+    private static final MobUpdatePacketBuilder MOB_UPDATE = new MobUpdatePacketBuilder();
+
     public Player(Client client) {
         this.client = client;
     }
@@ -143,34 +196,12 @@ public class Player extends Entity {
         skills.refresh();
         flags.add(UpdateFlag.APPEARANCE);
 
-        encode(new ChatboxMessagePacketBuilder("Welcome to Florence."));
-        encode(new ClientConfigurationPacketBuilder(
-                ClientConfigurationPacketBuilder.RUN_BUTTON_CONFIGURATION_INDEX, 0));
-        encode(new GameframeWidgetPacketBuilder(1,
-                GameframeWidgetPacketBuilder.SKILL_WIDGET_INTERFACE));
-        encode(new GameframeWidgetPacketBuilder(2,
-                GameframeWidgetPacketBuilder.QUEST_WIDGET_INTERFACE));
-        encode(new GameframeWidgetPacketBuilder(3,
-                GameframeWidgetPacketBuilder.INVENTORY_WIDGET_INTERFACE));
-        encode(new GameframeWidgetPacketBuilder(4,
-                GameframeWidgetPacketBuilder.EQUIPMENT_WIDGET_INTERFACE));
-        encode(new GameframeWidgetPacketBuilder(5,
-                GameframeWidgetPacketBuilder.PRAYER_WIDGET_INTERFACE));
-        encode(new GameframeWidgetPacketBuilder(6,
-                GameframeWidgetPacketBuilder.MAGIC_WIDGET_INTERFACE));
-        encode(new GameframeWidgetPacketBuilder(8,
-                GameframeWidgetPacketBuilder.FRIEND_WIDGET_INTERFACE));
-        encode(new GameframeWidgetPacketBuilder(9,
-                GameframeWidgetPacketBuilder.IGNORE_WIDGET_INTERFACE));
-        encode(new GameframeWidgetPacketBuilder(10,
-                GameframeWidgetPacketBuilder.LOGOUT_WIDGET_INTERFACE));
-        encode(new GameframeWidgetPacketBuilder(11,
-                GameframeWidgetPacketBuilder.OPTION_WIDGET_INTERFACE));
-        encode(new GameframeWidgetPacketBuilder(12,
-                GameframeWidgetPacketBuilder.EMOTE_WIDGET_INTERFACE));
-        encode(new GameframeWidgetPacketBuilder(13,
-                GameframeWidgetPacketBuilder.MUSIC_WIDGET_INTERFACE));
-        encode(new LoginPacketBuilder());
+        encode(PacketTemplates.WELCOME_MESSAGE);
+        encode(PacketTemplates.RUN_DISABLED);
+        for (PacketTemplate widget : PacketTemplates.GAMEFRAME_WIDGETS) {
+            encode(widget);
+        }
+        encode(PacketTemplates.LOGIN);
         encode(new LoginDetailsPacketBuilder(index, true));
 
         /**
@@ -184,7 +215,14 @@ public class Player extends Entity {
 
     @Override
     public void remove() {
-        if (!client.disconnected() || !connected) {
+
+        /**
+         * This user never entered the world, such as when they leave while
+         * waiting in the login queue.
+         */
+        if (client.disconnected() && !connected)
+            return;
+        if (!client.disconnected()) {
             System.err.println(
                     "To prevent synchronization concerns, a user's connection must be closed "
                     + "before they can be removed. If you're attempting to remove a user, "
@@ -196,25 +234,94 @@ public class Player extends Entity {
          * Removes this user from the world.
          */
         World.singleton().getPlayers().remove(index);
+        World.singleton().unregister(username, this);
 
         /**
          * Cancel any tasks that this user may have submitted.
          */
         World.singleton().getTasks().cancel(this);
 
+        /**
+         * Discards any messages that were received but never handled.
+         */
+        packets.drain(message -> {
+        });
+
         System.out.println("Removed " + username + " there are now "
                 + World.singleton().getPlayers().size() + " users online.");
         connected = false;
     }
 
+    /**
+     * Keeps this user in the world after their connection was lost so that
+     * they can resume their session. Called by the world's thread.
+     */
+    public void suspend() {
+        suspended = true;
+        suspendedAt = System.currentTimeMillis();
+        World.singleton().suspend(this);
+        System.out.println(username + " has lost their connection and has been suspended.");
+    }
+
+    /**
+     * Reattaches this suspended user to a new connection. Called by the
+     * world's thread.
+     *
+     * @param client The new connection.
+     * @return False if this user is no longer suspended.
+     */
+    public boolean resume(Client client) {
+        if (!suspended || !connected)
+            return false;
+        this.client = client;
+        suspended = false;
+        World.singleton().resume(this);
+
+        /**
+         * Frames sent while suspended were lost, so this user's view is
+         * rebuilt on their next update and their containers are refreshed.
+         */
+        desynchronized = true;
+        inventory.refresh();
+        equipment.refresh();
+        skills.refresh();
+        System.out.println(username + " has resumed their session.");
+        return true;
+    }
+
+    /**
+     * Disconnects this user without a grace period for reconnection.
+     */
+    public void logout() {
+        loggingOut = true;
+        disconnect();
+    }
+
     public void encode(PacketBuilder message) {
         client.encode(message);
     }
 
+    public void encode(PacketTemplate message) {
+        client.encode(message);
+    }
+
     public void disconnect() {
         client.disconnect();
     }
 
+    /**
+     * Invoked on this user's reactor when a message is received while this
+     * user's packet buffer is full.
+     *
+     * @param message The message that could not be queued.
+     */
+    private void overflow(Message message) {
+        if (!client.disconnected()) {
+            System.out.println(username + " has exceeded their packet capacity. Closing connection.");
+            logout();
+        }
+    }
+
     public void teleport(TeleportSpell spell, boolean button) {
         /**
          * Determines if this spell was triggered via a button press. If so, a
@@ -222,8 +329,7 @@ public class Player extends Entity {
          */
         if (button) {
             if (System.currentTimeMillis() - lastTeleportButton < TELEPORT_BUTTON_TIME_DELAY) {
-                encode(new ChatboxMessagePacketBuilder("Please wait a few moments before attempting to "
-                        + "cast a spell again."));
+                encode(PacketTemplates.TELEPORT_DELAY_MESSAGE);
                 return;
             } else {
                 lastTeleportButton = System.currentTimeMillis();
@@ -239,8 +345,30 @@ public class Player extends Entity {
 
     @Override
     public void update() {
-        encode(new PlayerUpdatePacketBuilder());
-        encode(new MobUpdatePacketBuilder());
+        if (suspended)
+            return;
+
+        /**
+         * Update frames are always encoded, even while this user's connection
+         * is saturated, as they are never deferred by its shaper. Interface
+         * and cosmetic frames are held back instead.
+         */
+        if (desynchronized) {
+
+            /**
+             * Rebuilds this user's view from scratch as the movement deltas
+             * that were lost can no longer be applied.
+             */
+            localPlayers.clear();
+            localMobs.clear();
+            r_state = RegionState.REBUILDING_REGION;
+            flags.add(UpdateFlag.APPEARANCE);
+            desynchronized = false;
+        }
+        if (r_state.equals(RegionState.REBUILDING_REGION))
+            encode(CONSTRUCT_REGION);
+        encode(PLAYER_UPDATE);
+        encode(MOB_UPDATE);
     }
 
     @Override
@@ -274,10 +402,26 @@ public class Player extends Entity {
         return client;
     }
 
-    public ConcurrentLinkedQueue<Packet> getPackets() {
+    public boolean isSuspended() {
+        return suspended;
+    }
+
+    public long getSuspendedAt() {
+        return suspendedAt;
+    }
+
+    public boolean isLoggingOut() {
+        return loggingOut;
+    }
+
+    public SpscRingBuffer<Message> getPackets() {
         return packets;
     }
 
+    public PacketStatistics getPacketStatistics() {
+        return packetStatistics;
+    }
+
     public Appearance getAppearance() {
         return appearance;
     }
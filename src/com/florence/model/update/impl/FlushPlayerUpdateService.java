@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2019 Dylan Vicchiarelli
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.florence.model.update.impl;
+
+import com.florence.model.player.Player;
+import com.florence.model.update.UpdateService;
+
+public class FlushPlayerUpdateService extends UpdateService<Player> {
+
+    @Override
+    public void update(Player player) {
+        synchronized (player) {
+
+            /**
+             * Writes everything this user was sent during this cycle.
+             */
+            player.getClient().flush();
+        }
+    }
+}
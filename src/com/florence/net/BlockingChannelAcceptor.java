@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2019 Dylan Vicchiarelli
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.florence.net;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Accepts connections with blocking operations and serves each one with a
+ * reading thread and a writing thread of its own, as an alternative to the
+ * reactors.
+ */
+public class BlockingChannelAcceptor implements Runnable {
+
+    private ServerSocketChannel server;
+
+    /**
+     * Provides the threads that connections are served by.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Limits the connections each remote address may open.
+     */
+    private ConnectionLimiter limiter;
+
+    public BlockingChannelAcceptor() throws IOException {
+        this(ServerSocketChannel.open(), newConnectionExecutor(), new ConnectionLimiter());
+    }
+
+    public BlockingChannelAcceptor(ServerSocketChannel server, ExecutorService executor, ConnectionLimiter limiter) {
+        this.server = server;
+        this.executor = executor;
+        this.limiter = limiter;
+    }
+
+    /**
+     * Creates an executor that starts a virtual thread for each task. Virtual
+     * threads are looked up reflectively so that the server still runs on
+     * releases that predate them, in which case a cached pool of platform
+     * threads is used instead.
+     *
+     * @return The executor.
+     */
+    public static ExecutorService newConnectionExecutor() {
+        try {
+            final Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException exception) {
+            System.out.println("Virtual threads are unavailable, connections will be served by platform threads.");
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    public void initialize(InetSocketAddress address) throws IOException {
+        server.configureBlocking(true);
+        server.bind(address);
+    }
+
+    @Override
+    public void run() {
+        while (server.isOpen() && !Thread.currentThread().isInterrupted()) {
+            try {
+                final SocketChannel socket = server.accept();
+                final InetAddress address = socket.socket().getInetAddress();
+                if (!limiter.acquire(address)) {
+                    socket.close();
+                    continue;
+                }
+                final BlockingChannelTransport transport;
+                try {
+                    socket.configureBlocking(true);
+                    transport = new BlockingChannelTransport(socket);
+                } catch (IOException exception) {
+                    exception.printStackTrace(System.out);
+                    limiter.abandon(socket, address);
+                    continue;
+                }
+                transport.getClient().setLimiter(limiter);
+                executor.execute(transport::read);
+                executor.execute(transport::write);
+            } catch (IOException exception) {
+                exception.printStackTrace(System.out);
+            }
+        }
+    }
+
+    public ServerSocketChannel getServer() {
+        return server;
+    }
+
+    public ConnectionLimiter getLimiter() {
+        return limiter;
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2019 Dylan Vicchiarelli
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.florence.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves a single connection with blocking operations on threads of its own:
+ * one that reads and decodes, and one that writes whatever the world or the
+ * reader hand to it. Intended to run on virtual threads, where a blocked
+ * thread costs little more than its stack.
+ */
+public class BlockingChannelTransport implements ChannelTransport {
+
+    /**
+     * The time in milliseconds that a disconnected connection is given to
+     * deliver its final frames before its socket is forcibly closed.
+     */
+    public static final int LINGER_TIMEOUT = 5000;
+
+    /**
+     * Forcibly closes the sockets of connections whose final frames could not
+     * be delivered in time, and advances the timing wheel.
+     */
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(task -> {
+        final Thread thread = new Thread(task, "transport-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Reaps connections that have gone silent, shared by every blocking
+     * connection and guarded by its own monitor.
+     */
+    private static final TimingWheel<Client> TIMEOUTS = new TimingWheel<>();
+
+    static {
+        TIMER.scheduleAtFixedRate(() -> {
+            final List<Client> expired = new ArrayList<>();
+            synchronized (TIMEOUTS) {
+                TIMEOUTS.advance(client -> {
+                    final long remaining = client.getIdleTimeRemaining();
+                    if (remaining > 0)
+                        TIMEOUTS.schedule(client.getTimeout(), remaining);
+                    else
+                        expired.add(client);
+                });
+            }
+
+            /**
+             * Disconnects outside of the monitor, as disconnecting cancels
+             * the timeout.
+             */
+            expired.forEach(ChannelDemultiplexer::expire);
+        }, TIMEOUTS.getResolution(), TIMEOUTS.getResolution(), TimeUnit.MILLISECONDS);
+    }
+
+    private final SocketChannel socket;
+    private final Client client;
+
+    /**
+     * Released each time the writer has frames to write or the connection
+     * has been disconnected.
+     */
+    private final Semaphore signal = new Semaphore(0);
+
+    /**
+     * Denotes if the connection has been handed over, in which case its
+     * socket must be left open.
+     */
+    private volatile boolean detached;
+
+    public BlockingChannelTransport(SocketChannel socket) {
+        this.socket = socket;
+        this.client = new Client(null, socket, this);
+        this.client.setTimeout(TIMEOUTS.create(client));
+        synchronized (TIMEOUTS) {
+            TIMEOUTS.schedule(client.getTimeout(), client.getIdleTimeout());
+        }
+    }
+
+    /**
+     * Reads and decodes until the connection is disconnected. Blocks the
+     * calling thread for the connection's lifetime.
+     */
+    public void read() {
+        try {
+            while (!client.disconnected()) {
+                client.read(1);
+                client.touch();
+
+                /**
+                 * Delivers any responses produced while decoding during the
+                 * login procedure.
+                 */
+                if (client.isLoggingIn())
+                    client.flush();
+            }
+        } finally {
+            client.release();
+        }
+    }
+
+    /**
+     * Writes frames as they are handed over until the connection is
+     * disconnected and its final frames have been delivered. Blocks the
+     * calling thread for the connection's lifetime.
+     */
+    public void write() {
+        final ArrayDeque<ByteBuffer> frames = new ArrayDeque<>();
+        final ByteBuffer[] gather = new ByteBuffer[Client.MAXIMUM_GATHERED_CHUNKS];
+        try {
+            while (true) {
+                signal.acquire();
+                signal.drainPermits();
+                client.take(frames);
+                while (!frames.isEmpty()) {
+                    int count = 0;
+                    while (count < gather.length && !frames.isEmpty()) {
+                        gather[count++] = frames.poll();
+                    }
+
+                    /**
+                     * A blocking gathering write only returns once every byte
+                     * has been written.
+                     */
+                    client.written(socket.write(gather, 0, count));
+                    for (int index = 0; index < count; index++) {
+                        gather[index] = null;
+                    }
+                }
+                if (client.disconnected())
+                    break;
+            }
+        } catch (IOException exception) {
+            client.disconnect();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            client.disconnect();
+        } finally {
+            if (!detached)
+                closeSocket();
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        synchronized (client.getInboundLock()) {
+            task.run();
+        }
+    }
+
+    @Override
+    public void flush(Client client) {
+        if (client.disconnected())
+            return;
+        if (client.stalled()) {
+            client.disconnect();
+            return;
+        }
+        signal.release();
+    }
+
+    @Override
+    public void close(Client client) {
+
+        /**
+         * Wakes the writer so that it delivers the final frames and closes the
+         * socket, which in turn ends the reader's blocking read.
+         */
+        signal.release();
+        synchronized (TIMEOUTS) {
+            TIMEOUTS.cancel(client.getTimeout());
+        }
+        TIMER.schedule(this::closeSocket, LINGER_TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void detach(Client client) {
+        detached = true;
+        synchronized (TIMEOUTS) {
+            TIMEOUTS.cancel(client.getTimeout());
+        }
+
+        /**
+         * Ends the writer. The reader ends on its own once decoding returns.
+         */
+        signal.release();
+    }
+
+    private void closeSocket() {
+        try {
+            socket.close();
+        } catch (IOException exception) {
+            exception.printStackTrace(System.out);
+        }
+    }
+
+    public Client getClient() {
+        return client;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2019 Dylan Vicchiarelli
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.florence.net;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+public class ChannelAcceptor implements Runnable {
+
+    private Selector selector;
+    private ServerSocketChannel server;
+
+    /**
+     * The reactors that accepted connections are distributed across.
+     */
+    private ChannelDemultiplexerGroup group;
+
+    public ChannelAcceptor(ChannelDemultiplexerGroup group) throws IOException {
+        this(Selector.open(), ServerSocketChannel.open(), group);
+    }
+
+    public ChannelAcceptor(Selector selector, ServerSocketChannel server, ChannelDemultiplexerGroup group) {
+        this.selector = selector;
+        this.server = server;
+        this.group = group;
+    }
+
+    public void initialize(InetSocketAddress address) throws IOException {
+        server.configureBlocking(ChannelDemultiplexer.CHANNEL_BLOCKS);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        server.bind(address);
+    }
+
+    @Override
+    public void run() {
+        while (selector.isOpen() && !Thread.currentThread().isInterrupted()) {
+            try {
+                selector.select();
+            } catch (IOException exception) {
+                exception.printStackTrace(System.out);
+                continue;
+            }
+            Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+            while (iterator.hasNext()) {
+                SelectionKey token = iterator.next();
+                iterator.remove();
+                if (!token.isValid() || !token.isAcceptable())
+                    continue;
+                try {
+                    SocketChannel socket;
+                    while ((socket = server.accept()) != null) {
+
+                        /**
+                         * Refuses connections from addresses that hold or
+                         * open too many, before anything is allocated for
+                         * them.
+                         */
+                        final InetAddress address = socket.socket().getInetAddress();
+                        if (!group.getLimiter().acquire(address)) {
+                            socket.close();
+                            continue;
+                        }
+                        try {
+                            socket.configureBlocking(ChannelDemultiplexer.CHANNEL_BLOCKS);
+                        } catch (IOException exception) {
+                            exception.printStackTrace(System.out);
+                            group.getLimiter().abandon(socket, address);
+                            continue;
+                        }
+
+                        /**
+                         * Pins this connection to a single reactor for its
+                         * lifetime.
+                         */
+                        group.next().register(socket);
+                    }
+                } catch (IOException exception) {
+                    exception.printStackTrace(System.out);
+                }
+            }
+        }
+    }
+
+    public ServerSocketChannel getServer() {
+        return server;
+    }
+
+    public ChannelDemultiplexerGroup getGroup() {
+        return group;
+    }
+
+    public void setGroup(ChannelDemultiplexerGroup group) {
+        this.group = group;
+    }
+}
@@ -17,14 +17,15 @@
 package com.florence.net;
 
 import java.io.IOException;
-import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
-import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
-public class ChannelDemultiplexer implements Runnable {
+public class ChannelDemultiplexer implements Runnable, ChannelTransport {
 
     /**
      * Denotes the blocking mode.
@@ -32,54 +33,236 @@ public class ChannelDemultiplexer implements Runnable {
     public static final boolean CHANNEL_BLOCKS = false;
 
     private Selector selector;
-    private ServerSocketChannel server;
+
+    /**
+     * Accepted connections waiting to be registered with this reactor's
+     * selector. Registration must occur on this reactor's thread.
+     */
+    private final ConcurrentLinkedQueue<SocketChannel> registrations = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Work submitted by other threads that must be executed on this reactor's
+     * thread.
+     */
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The amount of connections currently served by this reactor.
+     */
+    private final AtomicInteger load = new AtomicInteger();
+
+    /**
+     * Reaps connections served by this reactor that have gone silent. Only
+     * touched on this reactor's thread.
+     */
+    private final TimingWheel<Client> timeouts = new TimingWheel<>();
+
+    /**
+     * The limiter that admitted the connections registered with this
+     * reactor, if any.
+     */
+    private ConnectionLimiter limiter;
 
     public ChannelDemultiplexer() throws IOException {
-        this(Selector.open(), ServerSocketChannel.open());
+        this(Selector.open());
     }
 
-    public ChannelDemultiplexer(Selector selector, ServerSocketChannel server) {
+    public ChannelDemultiplexer(Selector selector) {
         this.selector = selector;
-        this.server = server;
     }
 
-    public void initialize(InetSocketAddress address) throws IOException {
-        server.configureBlocking(CHANNEL_BLOCKS);
-        server.register(selector, SelectionKey.OP_ACCEPT);
-        server.bind(address);
+    public void register(SocketChannel socket) {
+        load.incrementAndGet();
+        registrations.add(socket);
+        selector.wakeup();
+    }
+
+    public void deregister() {
+        load.decrementAndGet();
     }
 
+    /**
+     * Queues work to be executed on this reactor's thread and wakes the
+     * reactor if it is blocked waiting for readiness.
+     *
+     * @param task The work to execute.
+     */
     @Override
-    public void run() {
+    public void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    @Override
+    public void flush(Client client) {
+        client.transfer();
+    }
+
+    @Override
+    public void close(Client client) {
+        client.abandon();
         try {
-            selector.selectNow();
+            /**
+             * Closes this channel.
+             */
+            client.getSocket().close();
         } catch (IOException exception) {
             exception.printStackTrace(System.out);
+        } finally {
+            /**
+             * Requests that the registration of this key's channel with its
+             * selector be canceled.
+             */
+            client.getToken().cancel();
+
+            /**
+             * Releases this connection's share of this reactor, along with any
+             * partial frame it was holding.
+             */
+            deregister();
+            execute(() -> {
+                timeouts.cancel(client.getTimeout());
+                client.release();
+            });
         }
-        Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
-        while (iterator.hasNext()) {
+    }
+
+    @Override
+    public void detach(Client client) {
+        client.getToken().cancel();
+        deregister();
+        execute(() -> {
+            timeouts.cancel(client.getTimeout());
+            client.release();
+        });
+    }
+
+    @Override
+    public void run() {
+        while (selector.isOpen() && !Thread.currentThread().isInterrupted()) {
             try {
+
+                /**
+                 * Blocks until a channel is ready, this reactor is woken up
+                 * for registration or outbound work, or the next tick of
+                 * the timing wheel is due.
+                 */
+                selector.select(timeouts.untilNextTick());
+            } catch (IOException exception) {
+                exception.printStackTrace(System.out);
+                continue;
+            }
+            SocketChannel socket;
+            while ((socket = registrations.poll()) != null) {
+                try {
+                    SelectionKey register = socket.register(selector, SelectionKey.OP_READ);
+                    Client client = new Client(register, socket, this);
+                    client.setLimiter(limiter);
+                    client.setTimeout(timeouts.create(client));
+                    timeouts.schedule(client.getTimeout(), client.getIdleTimeout());
+                    register.attach(client);
+                } catch (ClosedChannelException exception) {
+                    deregister();
+                    if (limiter != null)
+                        limiter.abandon(socket, socket.socket().getInetAddress());
+                }
+            }
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException exception) {
+                    exception.printStackTrace(System.out);
+                }
+            }
+            Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+            while (iterator.hasNext()) {
                 SelectionKey token = iterator.next();
-                if (token.isValid()) {
-                    if (token.isAcceptable()) {
-                        SocketChannel socket = server.accept();
-                        if (socket == null)
-                            return;
-                        socket.configureBlocking(CHANNEL_BLOCKS);
-                        SelectionKey register = socket.register(selector, SelectionKey.OP_READ);
-
-                        register.attach(new Client(register, socket));
-                    } else if (token.isReadable()) {
-                        Client client = (Client) token.attachment();
-                        if (client == null)
-                            return;
+                iterator.remove();
+                if (!token.isValid())
+                    continue;
+                Client client = (Client) token.attachment();
+                if (client == null)
+                    continue;
+                try {
+                    if (token.isReadable()) {
+                        client.touch();
                         client.read();
+
+                        /**
+                         * Delivers any responses produced while decoding
+                         * during the login procedure.
+                         */
+                        if (client.isLoggingIn())
+                            client.flush();
+                    } else if (token.isWritable()) {
+
+                        /**
+                         * Finishes writing frames that were already released,
+                         * without releasing more ahead of the next cycle.
+                         */
+                        client.transfer();
                     }
+                } catch (RuntimeException exception) {
+                    fail(client, exception);
                 }
-            } catch (IOException exception) {
-                exception.printStackTrace(System.out);
             }
-            iterator.remove();
+            timeouts.advance(client -> {
+                try {
+                    final long remaining = client.getIdleTimeRemaining();
+                    if (remaining > 0)
+                        timeouts.schedule(client.getTimeout(), remaining);
+                    else
+                        expire(client);
+                } catch (RuntimeException exception) {
+                    fail(client, exception);
+                }
+            });
+        }
+    }
+
+    /**
+     * Disconnects a connection whose processing failed, so that the failure
+     * does not end this reactor and stall every other connection on it.
+     *
+     * @param client The connection.
+     * @param exception The failure.
+     */
+    private static void fail(Client client, RuntimeException exception) {
+        System.out.println("Unexpected error while serving " + client.getSocket() + ". Closing connection.");
+        exception.printStackTrace(System.out);
+        try {
+            client.disconnect();
+        } catch (RuntimeException secondary) {
+            secondary.printStackTrace(System.out);
         }
     }
+
+    /**
+     * Disconnects a connection that has remained silent past its deadline.
+     *
+     * @param client The connection.
+     */
+    static void expire(Client client) {
+        if (client.disconnected())
+            return;
+        System.out.println("Connection timed out: " + client.getSocket());
+        client.disconnect();
+    }
+
+    public Selector getSelector() {
+        return selector;
+    }
+
+    public ConnectionLimiter getLimiter() {
+        return limiter;
+    }
+
+    public void setLimiter(ConnectionLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    public int getLoad() {
+        return load.get();
+    }
 }
@@ -18,47 +18,62 @@ package com.florence.net;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 public class ChannelDemultiplexerBootstrap {
 
-    /**
-     * The default execution rate that this bootstrap will schedule for.
-     */
-    public static final int DEFAULT_EXECUTION_RATE = 30;
+    private ExecutorService executor;
+    private ChannelAcceptor acceptor;
+    private ChannelDemultiplexerGroup group;
 
-    private ScheduledExecutorService executor;
-    private ChannelDemultiplexer demultiplexer;
-
-    public ChannelDemultiplexerBootstrap(ScheduledExecutorService executor, ChannelDemultiplexer demultiplexer) {
+    public ChannelDemultiplexerBootstrap(ExecutorService executor, ChannelAcceptor acceptor) {
         this.executor = executor;
-        this.demultiplexer = demultiplexer;
+        this.acceptor = acceptor;
+        this.group = acceptor.getGroup();
     }
 
-    public ScheduledFuture<?> initialize(InetSocketAddress address) {
+    /**
+     * Binds the acceptor and dedicates one thread of the executor to the
+     * acceptor and to each reactor. The executor must therefore provide at
+     * least one thread per reactor plus one.
+     *
+     * @param address The address to bind to.
+     * @return The pending results of each loop.
+     */
+    public List<Future<?>> initialize(InetSocketAddress address) {
         try {
-            demultiplexer.initialize(address);
+            acceptor.initialize(address);
         } catch (IOException exception) {
             exception.printStackTrace(System.out);
         }
-        return executor.scheduleAtFixedRate(demultiplexer, 0, DEFAULT_EXECUTION_RATE, TimeUnit.MILLISECONDS);
+        List<Future<?>> futures = new ArrayList<>();
+        futures.add(executor.submit(acceptor));
+        for (ChannelDemultiplexer demultiplexer : group.getDemultiplexers()) {
+            futures.add(executor.submit(demultiplexer));
+        }
+        return futures;
     }
 
-    public ScheduledExecutorService getExecutor() {
+    public ExecutorService getExecutor() {
         return executor;
     }
 
-    public void setExecutor(ScheduledExecutorService executor) {
+    public void setExecutor(ExecutorService executor) {
         this.executor = executor;
     }
 
-    public ChannelDemultiplexer getDemultiplexer() {
-        return demultiplexer;
+    public ChannelAcceptor getAcceptor() {
+        return acceptor;
+    }
+
+    public void setAcceptor(ChannelAcceptor acceptor) {
+        this.acceptor = acceptor;
     }
 
-    public void setDemultiplexer(ChannelDemultiplexer demultiplexer) {
-        this.demultiplexer = demultiplexer;
+    public ChannelDemultiplexerGroup getGroup() {
+        return group;
     }
 }
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2019 Dylan Vicchiarelli
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.florence.net;
+
+import java.io.IOException;
+
+public class ChannelDemultiplexerGroup {
+
+    /**
+     * The default amount of reactors. One per available processor.
+     */
+    public static final int DEFAULT_REACTOR_COUNT = Runtime.getRuntime().availableProcessors();
+
+    public enum SelectionPolicy {
+
+        /**
+         * Connections are assigned to each reactor in turn.
+         */
+        ROUND_ROBIN,
+        /**
+         * Connections are assigned to the reactor serving the fewest
+         * connections.
+         */
+        LEAST_LOADED
+    }
+
+    private final ChannelDemultiplexer[] demultiplexers;
+    private SelectionPolicy policy;
+
+    /**
+     * Limits the connections each remote address may open.
+     */
+    private final ConnectionLimiter limiter;
+
+    /**
+     * The index of the next reactor when selecting in turn. Only ever accessed
+     * by the acceptor's thread.
+     */
+    private int next;
+
+    public ChannelDemultiplexerGroup(int reactors, SelectionPolicy policy) throws IOException {
+        this(reactors, policy, new ConnectionLimiter());
+    }
+
+    public ChannelDemultiplexerGroup(int reactors, SelectionPolicy policy, ConnectionLimiter limiter) throws IOException {
+        if (reactors < 1)
+            throw new IllegalArgumentException("At least one reactor is required.");
+        this.demultiplexers = new ChannelDemultiplexer[reactors];
+        this.policy = policy;
+        this.limiter = limiter;
+        for (int index = 0; index < demultiplexers.length; index++) {
+            demultiplexers[index] = new ChannelDemultiplexer();
+            demultiplexers[index].setLimiter(limiter);
+        }
+    }
+
+    public ChannelDemultiplexer next() {
+        switch (policy) {
+
+            case LEAST_LOADED:
+                ChannelDemultiplexer selected = demultiplexers[0];
+                for (ChannelDemultiplexer demultiplexer : demultiplexers) {
+                    if (demultiplexer.getLoad() < selected.getLoad())
+                        selected = demultiplexer;
+                }
+                return selected;
+
+            default:
+                ChannelDemultiplexer demultiplexer = demultiplexers[next];
+                next = (next + 1) % demultiplexers.length;
+                return demultiplexer;
+        }
+    }
+
+    public ChannelDemultiplexer[] getDemultiplexers() {
+        return demultiplexers;
+    }
+
+    public ConnectionLimiter getLimiter() {
+        return limiter;
+    }
+
+    public SelectionPolicy getPolicy() {
+        return policy;
+    }
+
+    public void setPolicy(SelectionPolicy policy) {
+        this.policy = policy;
+    }
+}
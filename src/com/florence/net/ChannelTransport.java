@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2019 Dylan Vicchiarelli
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.florence.net;
+
+/**
+ * The threading model that serves a connection, such as a reactor shared by
+ * many connections or a thread dedicated to a single one.
+ */
+public interface ChannelTransport {
+
+    /**
+     * Runs work that must not overlap with the decoding of a connection's
+     * inbound data, such as replacing its codecs or ciphers.
+     *
+     * @param task The work.
+     */
+    void execute(Runnable task);
+
+    /**
+     * Writes a connection's queued frames, or arranges for them to be
+     * written, without blocking the caller on the socket.
+     *
+     * @param client The connection.
+     */
+    void flush(Client client);
+
+    /**
+     * Closes a connection that has just been marked as disconnected, after a
+     * final attempt to deliver its queued frames.
+     *
+     * @param client The connection.
+     */
+    void close(Client client);
+
+    /**
+     * Stops serving a connection that has just been marked as disconnected,
+     * leaving its socket open so that it may be served elsewhere. Must be
+     * called while the connection is being decoded.
+     *
+     * @param client The connection.
+     */
+    void detach(Client client);
+}
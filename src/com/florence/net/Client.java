@@ -16,45 +16,216 @@
  */
 package com.florence.net;
 
-import com.aranea.cryptography.ISAACCipher;
 import com.florence.model.player.LogoutRequest;
 import com.florence.model.player.Player;
 import com.florence.model.World;
+import com.florence.net.codec.GameMessageEncoder;
 import com.florence.net.codec.MessageDecoder;
+import com.florence.net.codec.MessageDecoder.DecodeState;
 import com.florence.net.codec.MessageEncoder;
 import com.florence.net.codec.ServiceRequestMessageDecoder;
+import com.florence.net.buffer.BufferPool;
+import com.florence.net.buffer.BufferPoolGroup;
+import com.florence.net.buffer.PooledBuffer;
+import com.florence.net.buffer.ReceiveBufferSizer;
+import com.florence.net.packet.PacketBuilder;
+import com.florence.net.packet.PacketPriority;
+import com.florence.net.packet.PacketTemplate;
+import com.florence.util.IsaacKeystream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 
 public class Client {
 
     /**
-     * The maximum amount of bytes that can be read in a single iteration.
+     * The initial size of a connection's receive buffer. The size adapts to
+     * the connection's traffic thereafter.
      */
     public static final int IN_BUFFER_CAPACITY = 512;
 
+    /**
+     * The maximum amount of reads performed each time this connection becomes
+     * readable. Prevents a single connection from monopolizing its reactor.
+     */
+    public static final int READ_BUDGET = 8;
+
+    /**
+     * The amount of queued outbound bytes at which non-essential frames are
+     * paused for this connection.
+     */
+    public static final int OUTBOUND_HIGH_WATERMARK = 64 * 1024;
+
+    /**
+     * The amount of queued outbound bytes that a paused connection must drain
+     * below before non-essential frames are resumed.
+     */
+    public static final int OUTBOUND_LOW_WATERMARK = 16 * 1024;
+
+    /**
+     * The maximum amount of queued outbound bytes. A connection that exceeds
+     * this is disconnected immediately.
+     */
+    public static final int OUTBOUND_CAPACITY = 512 * 1024;
+
+    /**
+     * The time in milliseconds that a connection may remain paused before it
+     * is disconnected.
+     */
+    public static final int SATURATION_TIMEOUT = 15000;
+
+    /**
+     * The time in milliseconds that a connection may remain silent before it
+     * has logged in.
+     */
+    public static final int HANDSHAKE_TIMEOUT = 10000;
+
+    /**
+     * The system property that overrides the time in milliseconds that a
+     * logged in connection may remain silent.
+     */
+    public static final String IDLE_TIMEOUT_PROPERTY = "florence.idle-timeout";
+
+    /**
+     * The time in milliseconds that a logged in connection may remain silent.
+     * The client sends an idle packet well within this period.
+     */
+    public static final int IDLE_TIMEOUT = Integer.getInteger(IDLE_TIMEOUT_PROPERTY, 60000);
+
+    /**
+     * The capacity of each direct chunk that outbound frames are staged in.
+     */
+    public static final int OUT_BUFFER_CAPACITY = 4096;
+
+    /**
+     * The maximum amount of staged chunks that are written in a single
+     * gathering write.
+     */
+    public static final int MAXIMUM_GATHERED_CHUNKS = 16;
+
+    /**
+     * The direct chunks that sockets are read into, one pool per receive
+     * buffer size class.
+     */
+    public static final BufferPoolGroup READ_BUFFERS = new BufferPoolGroup(ReceiveBufferSizer.SIZE_CLASSES, 64);
+
+    /**
+     * The direct chunks that outbound frames are staged in before being
+     * written.
+     */
+    public static final BufferPool WRITE_BUFFERS = new BufferPool(OUT_BUFFER_CAPACITY, 64);
+
     private SelectionKey token;
     private SocketChannel socket;
-    private final ByteBuffer buffer = ByteBuffer.allocate(IN_BUFFER_CAPACITY);
+
+    /**
+     * The transport that serves this connection for its lifetime, such as the
+     * reactor that it is pinned to.
+     */
+    private final ChannelTransport transport;
+
+    /**
+     * Held while inbound data is decoded, so that work executed by the
+     * transport on other threads never overlaps with decoding.
+     */
+    private final Object inbound = new Object();
+
+    /**
+     * The chunk that inbound data is accumulated in. Only held while a read is
+     * in progress or a partial frame is waiting for the rest of its bytes.
+     * Only ever accessed by this connection's reactor.
+     */
+    private PooledBuffer lease;
+    private ByteBuffer buffer;
+
+    /**
+     * Adapts the size of this connection's receive buffer to its traffic.
+     */
+    private final ReceiveBufferSizer sizer = new ReceiveBufferSizer(IN_BUFFER_CAPACITY);
+
+    /**
+     * Encoded frames waiting to be written. Guarded by its own monitor as
+     * frames are queued by both the world's thread and this connection's
+     * reactor.
+     */
+    private final ArrayDeque<ByteBuffer> outbound = new ArrayDeque<>();
+
+    /**
+     * Game frames waiting to be released onto the wire by priority. Guarded
+     * by the monitor of the outbound frames.
+     */
+    private final OutboundShaper shaper = new OutboundShaper();
+
+    /**
+     * Direct chunks holding staged frames that have not been fully written.
+     */
+    private final ArrayDeque<PooledBuffer> inflight = new ArrayDeque<>();
+
+    /**
+     * A reusable array used to gather the staged chunks into a single write.
+     */
+    private final ByteBuffer[] gather = new ByteBuffer[MAXIMUM_GATHERED_CHUNKS];
+
+    /**
+     * Denotes if this connection's reactor has been asked to notify it once
+     * the socket can accept more data.
+     */
+    private boolean writeInterest;
+
+    /**
+     * The amount of outbound bytes that have been queued but not yet written.
+     */
+    private int pending;
+
+    /**
+     * Denotes if this connection has reached its high watermark and has not
+     * yet drained below its low watermark.
+     */
+    private volatile boolean saturated;
+
+    /**
+     * The time at which this connection last became saturated.
+     */
+    private long saturatedSince;
 
     private MessageEncoder encoder;
     private MessageDecoder decoder;
 
-    private boolean disconnected;
+    private volatile boolean disconnected;
 
-    private ISAACCipher encryption;
-    private ISAACCipher decryption;
+    /**
+     * The timeout that reaps this connection if it stalls, owned by its
+     * transport.
+     */
+    private TimingWheel.Timeout<Client> timeout;
+
+    /**
+     * The time at which this connection was last heard from.
+     */
+    private volatile long lastRead = System.currentTimeMillis();
+
+    private IsaacKeystream encryption;
+    private IsaacKeystream decryption;
+
+    /**
+     * The user associated with this connection. Only allocated once a login
+     * has succeeded, so that connections which never log in cost nothing
+     * more than their buffers.
+     */
+    private volatile Player player;
 
     /**
-     * The user associated with this connection.
+     * The limiter that admitted this connection, if any.
      */
-    private final Player player = new Player(this);
+    private ConnectionLimiter limiter;
 
-    public Client(SelectionKey token, SocketChannel socket) {
+    public Client(SelectionKey token, SocketChannel socket, ChannelTransport transport) {
         this.token = token;
         this.socket = socket;
+        this.transport = transport;
 
         this.decoder = new ServiceRequestMessageDecoder();
     }
@@ -65,56 +236,418 @@ public class Client {
         write(encoder.encode(this, message));
     }
 
+    /**
+     * Encodes a game packet into the lane of its priority, where it waits
+     * until this connection is next flushed.
+     *
+     * @param builder The packet.
+     */
+    @SuppressWarnings("unchecked")
+    public void encode(PacketBuilder builder) {
+        if (encoder == null)
+            throw new NullPointerException("A valid encoder must be registered.");
+        if (disconnected)
+            return;
+        final ByteBuffer frame = encoder.encode(this, builder);
+        frame.flip();
+        queue(frame, builder.getPriority(), builder.getCoalescingKey());
+    }
+
+    /**
+     * Queues a reference to a pre-encoded packet into the lane of its
+     * priority.
+     *
+     * @param template The packet.
+     */
+    public void encode(PacketTemplate template) {
+        if (encoder == null)
+            throw new NullPointerException("A valid encoder must be registered.");
+        queue(template.share(), template.getPriority(), template.getCoalescingKey());
+    }
+
+    private void queue(ByteBuffer frame, PacketPriority priority, Object key) {
+        synchronized (outbound) {
+            if (disconnected)
+                return;
+            shaper.queue(frame, priority, key);
+            account();
+        }
+    }
+
     public void write(ByteBuffer source) {
         source.flip();
-        try {
-            socket.write(source);
-        } catch (IOException exception) {
+        synchronized (outbound) {
+            if (disconnected)
+                return;
+            outbound.add(source);
+            pending += source.remaining();
+            account();
+        }
+    }
+
+    /**
+     * Enforces the outbound capacity and watermarks after frames have been
+     * queued. Only frames on the wire count towards the watermarks, so that
+     * frames held back by priority never pause the update frame.
+     */
+    private void account() {
+        if (pending + shaper.getQueued() > OUTBOUND_CAPACITY) {
+            System.out.println("Outbound capacity exceeded by " + socket + ". Closing connection.");
             disconnect();
+        } else if (!saturated && pending >= OUTBOUND_HIGH_WATERMARK) {
+            saturated = true;
+            saturatedSince = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Releases waiting game frames by priority, then writes this connection's
+     * queued frames or hands them to the thread that writes them. Never
+     * blocks the caller on the socket.
+     */
+    public void flush() {
+        synchronized (outbound) {
+            if (!disconnected && !shaper.isEmpty()) {
+                pending += shaper.release(outbound, encryption, saturated || pending >= OUTBOUND_LOW_WATERMARK);
+                account();
+            }
+        }
+        transport.flush(this);
+    }
+
+    /**
+     * Writes as many queued frames as the socket will accept using a single
+     * gathering write. Any remainder is left queued and the reactor is asked
+     * to finish the flush once the socket becomes writable. Requires a
+     * non-blocking socket.
+     */
+    void transfer() {
+        synchronized (outbound) {
+            if (disconnected || (outbound.isEmpty() && inflight.isEmpty()))
+                return;
+            try {
+                drain();
+            } catch (IOException exception) {
+                disconnect();
+                return;
+            }
+            if (stalled()) {
+                disconnect();
+                return;
+            }
+            interest(!outbound.isEmpty() || !inflight.isEmpty());
+        }
+    }
+
+    /**
+     * Determines if this connection has remained saturated for too long, in
+     * which case it should be disconnected.
+     *
+     * @return The result.
+     */
+    boolean stalled() {
+        if (saturated && System.currentTimeMillis() - saturatedSince >= SATURATION_TIMEOUT) {
+            System.out.println("Outbound saturation timeout reached by " + socket + ". Closing connection.");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes every queued frame so that it can be written by a blocking
+     * transport. Frames queued before this connection was disconnected are
+     * still handed over, so that a final frame such as a logout is
+     * delivered.
+     *
+     * @param frames The collection to move the frames into.
+     */
+    void take(ArrayDeque<ByteBuffer> frames) {
+        synchronized (outbound) {
+            frames.addAll(outbound);
+            outbound.clear();
         }
     }
 
+    /**
+     * Accounts for frames that were written by a blocking transport.
+     *
+     * @param bytes The amount of bytes written.
+     */
+    void written(long bytes) {
+        synchronized (outbound) {
+            pending -= bytes;
+            if (saturated && pending <= OUTBOUND_LOW_WATERMARK)
+                saturated = false;
+        }
+    }
+
+    private void drain() throws IOException {
+        stage();
+        int count = 0;
+        for (PooledBuffer chunk : inflight) {
+            gather[count++] = chunk.getBuffer();
+        }
+        try {
+            pending -= socket.write(gather, 0, count);
+        } finally {
+            Arrays.fill(gather, 0, count, null);
+        }
+        while (!inflight.isEmpty() && !inflight.peek().getBuffer().hasRemaining()) {
+            inflight.poll().release();
+        }
+        if (saturated && pending <= OUTBOUND_LOW_WATERMARK)
+            saturated = false;
+    }
+
+    /**
+     * Copies queued frames into leased direct chunks until either the queue
+     * is empty or the maximum amount of chunks are staged.
+     */
+    private void stage() {
+        PooledBuffer chunk = null;
+        ByteBuffer frame;
+        while ((frame = outbound.peek()) != null) {
+            if (chunk == null) {
+                if (inflight.size() >= MAXIMUM_GATHERED_CHUNKS)
+                    break;
+                chunk = WRITE_BUFFERS.lease();
+            }
+            final ByteBuffer target = chunk.getBuffer();
+            final int limit = frame.limit();
+            frame.limit(frame.position() + Math.min(frame.remaining(), target.remaining()));
+            target.put(frame);
+            frame.limit(limit);
+            if (!frame.hasRemaining())
+                outbound.poll();
+            if (!target.hasRemaining()) {
+                target.flip();
+                inflight.add(chunk);
+                chunk = null;
+            }
+        }
+        if (chunk != null) {
+            chunk.getBuffer().flip();
+            inflight.add(chunk);
+        }
+    }
+
+    /**
+     * Registers or removes interest in write readiness. The change is made on
+     * the reactor's thread, which is woken so that it takes effect
+     * immediately.
+     *
+     * @param write Denotes if this connection has data left over.
+     */
+    private void interest(boolean write) {
+        if (writeInterest == write)
+            return;
+        writeInterest = write;
+        final int operations = write ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+        transport.execute(() -> {
+            if (token.isValid())
+                token.interestOps(operations);
+        });
+    }
+
     public void read() {
+        read(READ_BUDGET);
+    }
+
+    /**
+     * Reads and decodes inbound data.
+     *
+     * @param budget The maximum amount of reads to perform. A blocking
+     * transport reads once per call so that responses are flushed before it
+     * blocks again.
+     */
+    public void read(int budget) {
         if (decoder == null)
             throw new NullPointerException("A valid decoder must be registered.");
         if (disconnected)
             return;
+        if (lease == null) {
+            lease = READ_BUFFERS.lease(sizer.getCapacity());
+            buffer = lease.getBuffer();
+        }
         try {
-            buffer.clear();
-            if (socket.read(buffer) != -1) {
+            for (int reads = 0; reads < budget && !disconnected; reads++) {
+                final int available = buffer.remaining();
+                final int read = socket.read(buffer);
+                if (read == -1) {
+
+                    /**
+                     * The end of stream has been reached.
+                     */
+                    disconnect();
+                    return;
+                }
+                if (read == 0)
+                    break;
+                sizer.record(read, available);
                 buffer.flip();
-                while (buffer.hasRemaining()) {
-                    if (!decoder.decode(this))
+                synchronized (inbound) {
+                    decode();
+                }
+                if (lease.capacity() < sizer.getCapacity()) {
+
+                    /**
+                     * A larger size class is now preferred, so any partial
+                     * frame is carried over into a fresh chunk.
+                     */
+                    exchange(sizer.getCapacity());
+                } else {
+
+                    /**
+                     * Moves any partial frame to the beginning of the buffer
+                     * so that the next read appends to it.
+                     */
+                    buffer.compact();
+                }
+                if (!buffer.hasRemaining()) {
+                    if (buffer.capacity() >= READ_BUFFERS.getMaximumCapacity()) {
+                        System.out.println("Inbound frame exceeds the capacity of " + socket + ". Closing connection.");
                         disconnect();
+                    } else {
+
+                        /**
+                         * A single frame does not fit within the current size
+                         * class.
+                         */
+                        sizer.grow();
+                        buffer.flip();
+                        exchange(Math.max(sizer.getCapacity(), buffer.capacity() * 2));
+                    }
                 }
             }
         } catch (IOException exception) {
             disconnect();
+        } finally {
+            if (disconnected || buffer.position() == 0)
+                release();
         }
     }
 
-    public void disconnect() {
-        if (disconnected)
+    /**
+     * Replaces this connection's inbound chunk with a newly leased one,
+     * carrying over any unconsumed bytes.
+     *
+     * @param capacity The minimum capacity of the new chunk.
+     */
+    private void exchange(int capacity) {
+        final PooledBuffer previous = lease;
+        final ByteBuffer remaining = buffer;
+        lease = READ_BUFFERS.lease(Math.min(READ_BUFFERS.getMaximumCapacity(),
+                Math.max(capacity, remaining.remaining() + 1)));
+        buffer = lease.getBuffer();
+        buffer.put(remaining);
+        previous.release();
+    }
+
+    private void decode() {
+        while (buffer.hasRemaining() && !disconnected) {
+            final DecodeState state = decoder.decode(this);
+            if (state == DecodeState.UNDERFLOW)
+                break;
+            if (state == DecodeState.REJECTED)
+                disconnect();
+        }
+    }
+
+    /**
+     * Returns this connection's inbound chunk to its pool. Must be called by
+     * the thread that reads this connection.
+     */
+    void release() {
+        if (lease == null)
             return;
-        disconnected = true;
+        buffer = null;
+        lease.release();
+        lease = null;
+    }
+
+    public void disconnect() {
+        synchronized (outbound) {
+            if (disconnected)
+                return;
+
+            /**
+             * Releases every waiting game frame, so that a final frame such
+             * as a logout is delivered.
+             */
+            if (!shaper.isEmpty())
+                pending += shaper.flush(outbound, encryption);
+            disconnected = true;
+        }
+
+        /**
+         * Returns the array that game packets were encoded into.
+         */
+        if (encoder instanceof GameMessageEncoder)
+            ((GameMessageEncoder) encoder).release();
+
+        /**
+         * Returns this connection's share of its address's limit.
+         */
+        if (limiter != null)
+            limiter.release(socket.socket().getInetAddress());
 
         /**
          * Queues this logout request.
          */
-        World.singleton().getLogouts().add(new LogoutRequest(player));
-        try {
-            /**
-             * Closes this channel.
-             */
-            socket.close();
-        } catch (IOException exception) {
-            exception.printStackTrace(System.out);
-        } finally {
+        final Player player = this.player;
+        if (player != null)
+            World.singleton().getLogouts().add(new LogoutRequest(player, this));
+
+        /**
+         * Closes this channel once the transport has made a final attempt to
+         * deliver anything that is still queued, such as a logout frame.
+         */
+        transport.close(this);
+    }
+
+    /**
+     * Stops serving this connection without closing its socket, so that it
+     * may be handed over to another server. Only valid before a login, while
+     * nothing is queued.
+     */
+    public void detach() {
+        synchronized (outbound) {
+            if (disconnected)
+                return;
+            disconnected = true;
+        }
+        if (limiter != null)
+            limiter.release(socket.socket().getInetAddress());
+        transport.detach(this);
+    }
+
+    /**
+     * Makes a final non-blocking attempt to write anything that is still
+     * queued, then discards the remainder. Called by a non-blocking transport
+     * once this connection has been disconnected.
+     */
+    void abandon() {
+        synchronized (outbound) {
+            if (!outbound.isEmpty() || !inflight.isEmpty()) {
+                try {
+                    drain();
+                } catch (IOException exception) {
+
+                    /**
+                     * The connection is being closed regardless.
+                     */
+                }
+            }
+            outbound.clear();
+            pending = 0;
+
             /**
-             * Requests that the registration of this key's channel with its
-             * selector be canceled.
+             * Returns any chunks that could not be written.
              */
-            token.cancel();
+            PooledBuffer chunk;
+            while ((chunk = inflight.poll()) != null) {
+                chunk.release();
+            }
         }
     }
 
@@ -123,14 +656,44 @@ public class Client {
         this.decoder = decoder;
     }
 
+    /**
+     * Denotes if this connection has yet to log in, in which case responses
+     * are flushed by its transport as soon as they are produced. The frames
+     * of a logged in connection are flushed once per cycle by the world.
+     *
+     * @return The result.
+     */
+    public boolean isLoggingIn() {
+        return player == null;
+    }
+
     public Player getPlayer() {
         return player;
     }
 
+    /**
+     * Attaches a user to this connection once their login has succeeded,
+     * either a newly created one or an existing one whose session is resumed.
+     * Must be called before this connection decodes game packets.
+     *
+     * @param player The user.
+     */
+    public void setPlayer(Player player) {
+        this.player = player;
+    }
+
     public ByteBuffer getBuffer() {
         return buffer;
     }
 
+    public PooledBuffer getLease() {
+        return lease;
+    }
+
+    public ReceiveBufferSizer getSizer() {
+        return sizer;
+    }
+
     public SelectionKey getToken() {
         return token;
     }
@@ -147,6 +710,27 @@ public class Client {
         this.socket = socket;
     }
 
+    public ConnectionLimiter getLimiter() {
+        return limiter;
+    }
+
+    public void setLimiter(ConnectionLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    public ChannelTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Returns the monitor held while inbound data is decoded.
+     *
+     * @return The monitor.
+     */
+    public Object getInboundLock() {
+        return inbound;
+    }
+
     public MessageEncoder getEncoder() {
         return encoder;
     }
@@ -163,23 +747,70 @@ public class Client {
         this.decoder = decoder;
     }
 
-    public ISAACCipher getEncryption() {
+    public IsaacKeystream getEncryption() {
         return encryption;
     }
 
-    public void setEncryption(ISAACCipher encryption) {
+    public void setEncryption(IsaacKeystream encryption) {
         this.encryption = encryption;
     }
 
-    public ISAACCipher getDecryption() {
+    public IsaacKeystream getDecryption() {
         return decryption;
     }
 
-    public void setDecryption(ISAACCipher decryption) {
+    public void setDecryption(IsaacKeystream decryption) {
         this.decryption = decryption;
     }
 
     public boolean disconnected() {
         return disconnected;
     }
+
+    /**
+     * Returns the time that this connection may remain silent in its current
+     * stage. Connections that have yet to exchange keys are held to a far
+     * shorter deadline.
+     *
+     * @return The time in milliseconds.
+     */
+    public int getIdleTimeout() {
+        return decryption == null ? HANDSHAKE_TIMEOUT : IDLE_TIMEOUT;
+    }
+
+    /**
+     * Records that this connection has just been heard from. Its timeout is
+     * only moved once it fires, so that reads cost a single store.
+     */
+    public void touch() {
+        lastRead = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the time left until this connection's deadline in its current
+     * stage, which may have changed since its timeout was scheduled.
+     *
+     * @return The time in milliseconds, zero or less if it has passed.
+     */
+    public long getIdleTimeRemaining() {
+        return lastRead + getIdleTimeout() - System.currentTimeMillis();
+    }
+
+    public TimingWheel.Timeout<Client> getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(TimingWheel.Timeout<Client> timeout) {
+        this.timeout = timeout;
+    }
+
+    public boolean isSaturated() {
+        return saturated;
+    }
+
+    public int getPending() {
+        synchronized (outbound) {
+            return pending;
+        }
+    }
 }
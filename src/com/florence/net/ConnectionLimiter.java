@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2019 Dylan Vicchiarelli
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.florence.net;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits connections per remote address at accept time, both in how many may
+ * be open at once and, with a token bucket, how quickly new ones may be
+ * opened. Connections that are refused are closed before any resources are
+ * allocated for them.
+ */
+public class ConnectionLimiter {
+
+    /**
+     * The default maximum amount of open connections per address.
+     */
+    public static final int DEFAULT_CONNECTIONS_PER_ADDRESS = 5;
+
+    /**
+     * The default amount of connections an address may open in a burst.
+     */
+    public static final int DEFAULT_BURST = 5;
+
+    /**
+     * The default amount of connections per second an address may open once
+     * its burst has been spent.
+     */
+    public static final double DEFAULT_RATE = 1.0;
+
+    /**
+     * The time in milliseconds between sweeps of addresses that no longer
+     * hold any connections.
+     */
+    public static final int PURGE_INTERVAL = 60000;
+
+    private static final class Entry {
+
+        /**
+         * The amount of open connections.
+         */
+        private int connections;
+        private double tokens;
+        private long refilled;
+
+        private Entry(int burst, long now) {
+            this.tokens = burst;
+            this.refilled = now;
+        }
+
+        private void refill(int burst, double rate, long now) {
+            tokens = Math.min(burst, tokens + (now - refilled) * rate / 1000.0);
+            refilled = now;
+        }
+    }
+
+    private final ConcurrentHashMap<InetAddress, Entry> entries = new ConcurrentHashMap<>();
+    private final int connectionsPerAddress;
+    private final int burst;
+    private final double rate;
+
+    /**
+     * The amount of connections that have been refused.
+     */
+    private final AtomicLong refused = new AtomicLong();
+    private volatile long purged = System.currentTimeMillis();
+
+    public ConnectionLimiter() {
+        this(DEFAULT_CONNECTIONS_PER_ADDRESS, DEFAULT_BURST, DEFAULT_RATE);
+    }
+
+    public ConnectionLimiter(int connectionsPerAddress, int burst, double rate) {
+        this.connectionsPerAddress = connectionsPerAddress;
+        this.burst = burst;
+        this.rate = rate;
+    }
+
+    /**
+     * Attempts to admit a new connection from an address.
+     *
+     * @param address The remote address.
+     * @return If the connection was admitted, in which case it must later be
+     * released.
+     */
+    public boolean acquire(InetAddress address) {
+        final long now = System.currentTimeMillis();
+        if (now - purged >= PURGE_INTERVAL)
+            purge(now);
+        final boolean[] admitted = new boolean[1];
+        entries.compute(address, (key, entry) -> {
+            if (entry == null)
+                entry = new Entry(burst, now);
+            else
+                entry.refill(burst, rate, now);
+            if (entry.connections < connectionsPerAddress && entry.tokens >= 1) {
+                entry.tokens--;
+                entry.connections++;
+                admitted[0] = true;
+            }
+            return entry;
+        });
+        if (!admitted[0])
+            refused.incrementAndGet();
+        return admitted[0];
+    }
+
+    /**
+     * Releases a connection that was admitted.
+     *
+     * @param address The remote address.
+     */
+    public void release(InetAddress address) {
+        entries.computeIfPresent(address, (key, entry) -> {
+            entry.connections--;
+            return entry;
+        });
+    }
+
+    /**
+     * Closes a connection that was admitted but could not be served, and
+     * releases it.
+     *
+     * @param socket The connection.
+     * @param address The remote address.
+     */
+    public void abandon(SocketChannel socket, InetAddress address) {
+        release(address);
+        try {
+            socket.close();
+        } catch (IOException exception) {
+            exception.printStackTrace(System.out);
+        }
+    }
+
+    /**
+     * Forgets addresses that hold no connections and whose bucket has
+     * refilled, as they are indistinguishable from addresses never seen.
+     */
+    private void purge(long now) {
+        purged = now;
+        for (InetAddress address : entries.keySet()) {
+            entries.computeIfPresent(address, (key, entry) -> {
+                entry.refill(burst, rate, now);
+                return entry.connections == 0 && entry.tokens >= burst ? null : entry;
+            });
+        }
+    }
+
+    public long getRefused() {
+        return refused.get();
+    }
+
+    public int getConnectionsPerAddress() {
+        return connectionsPerAddress;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2019 Dylan Vicchiarelli
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.florence.net;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Performs the costly portion of each login, such as constructing ciphers,
+ * decoding credentials and detecting duplicate sessions, on a bounded pool of
+ * workers so that the reactors remain free to serve in-game traffic.
+ */
+public class LoginService {
+
+    /**
+     * The default amount of workers.
+     */
+    public static final int DEFAULT_WORKERS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The default amount of logins that may be waiting for a worker. Logins
+     * beyond this are told to try again.
+     */
+    public static final int DEFAULT_BACKLOG = 2048;
+
+    private final ThreadPoolExecutor workers;
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public LoginService() {
+        this(DEFAULT_WORKERS, DEFAULT_BACKLOG);
+    }
+
+    public LoginService(int workers, int backlog) {
+        final AtomicInteger count = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(backlog), task -> {
+                    final Thread thread = new Thread(task, "login-worker-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Queues a login.
+     *
+     * @param task The login's work.
+     * @return False if the backlog is full and the login was not queued.
+     */
+    public boolean submit(Runnable task) {
+        try {
+            workers.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception exception) {
+                    exception.printStackTrace(System.out);
+                } finally {
+                    completed.incrementAndGet();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException exception) {
+            rejected.incrementAndGet();
+            return false;
+        }
+    }
+
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    public int getBacklog() {
+        return workers.getQueue().size();
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    @Override
+    public String toString() {
+        return "LoginService[workers=" + workers.getPoolSize() + ", active=" + workers.getActiveCount()
+                + ", backlog=" + getBacklog() + ", completed=" + completed + ", rejected=" + rejected + "]";
+    }
+}
@@ -16,10 +16,15 @@
  */
 package com.florence.net;
 
+import com.florence.net.buffer.ArrayPool;
 import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
-import java.util.stream.IntStream;
 
+/**
+ * Writes packets into a heap array. Bits are gathered in a 64-bit
+ * accumulator and only stored once whole bytes are ready, rather than read,
+ * masked and rewritten one byte at a time. Arrays that are outgrown are
+ * returned to a shared pool.
+ */
 public class OutByteBuffer {
 
     /**
@@ -48,11 +53,30 @@ public class OutByteBuffer {
      */
     public static final int OCTET_LENGTH = 8;
 
-    private ByteBuffer buffer;
-    private int b_position;
-    private OutByteBufferAccess access = OutByteBufferAccess.BYTE_ACCESS;
+    /**
+     * The arrays that buffers are backed by. The largest size class holds the
+     * largest frame that a variable short header can describe.
+     */
+    public static final ArrayPool ARRAYS = new ArrayPool(128 * 1024, 64);
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private byte[] array;
+    private int position;
+    private int limit;
+
+    /**
+     * A view of the array, kept in step with this buffer when requested.
+     */
+    private ByteBuffer view;
 
-    public static final int[] BIT_MASK = new int[32];
+    /**
+     * The bits that have been written but not yet stored, and their amount.
+     * The amount never exceeds the width of the accumulator.
+     */
+    private long accumulator;
+    private int bits;
+    private OutByteBufferAccess access = OutByteBufferAccess.BYTE_ACCESS;
 
     public enum OutByteBufferAccess {
 
@@ -68,99 +92,135 @@ public class OutByteBuffer {
 
     public OutByteBuffer(int capacity) {
         /**
-         * Allocates on the heap opposed to direct native memory. This should
-         * never be allocated directly as that is far more expensive. Buffers
-         * allocated on the heap will hold onto native memory until they get
-         * automatically garbage collected. Otherwise, the native memory would
-         * have to be manually pooled and released.
+         * Allocates on the heap opposed to direct native memory. Heap arrays
+         * are written without bounds-checked calls and are copied in bulk.
          */
-        this(ByteBuffer.allocate(capacity));
+        this.array = ARRAYS.lease(capacity);
+        this.limit = array.length;
+        this.view = ByteBuffer.wrap(array);
     }
 
     public OutByteBuffer writeByte(int value) {
-        buffer.put((byte) value);
+        ensure(Byte.BYTES);
+        array[position++] = (byte) value;
         return this;
     }
 
     public OutByteBuffer writeByteC(int value) {
-        buffer.put((byte) -value);
+        ensure(Byte.BYTES);
+        array[position++] = (byte) -value;
         return this;
     }
 
     public OutByteBuffer writeByteA(int value) {
-        buffer.put((byte) (value + (BITS_IN_A_BYTE * 16)));
+        ensure(Byte.BYTES);
+        array[position++] = (byte) (value + (BITS_IN_A_BYTE * 16));
         return this;
     }
 
     public OutByteBuffer writeByteS(int value) {
-        buffer.put((byte) ((BITS_IN_A_BYTE * 16) - value));
+        ensure(Byte.BYTES);
+        array[position++] = (byte) ((BITS_IN_A_BYTE * 16) - value);
         return this;
     }
 
     public OutByteBuffer writeInt(int value) {
-        buffer.putInt(value);
+        ensure(Integer.BYTES);
+        array[position++] = (byte) (value >> (BITS_IN_A_BYTE * 3));
+        array[position++] = (byte) (value >> (BITS_IN_A_BYTE * 2));
+        array[position++] = (byte) (value >> BITS_IN_A_BYTE);
+        array[position++] = (byte) value;
         return this;
     }
 
     public OutByteBuffer writeLong(long value) {
-        buffer.putLong(value);
+        ensure(Long.BYTES);
+        for (int shift = BITS_IN_A_BYTE * 7; shift >= 0; shift -= BITS_IN_A_BYTE) {
+            array[position++] = (byte) (value >> shift);
+        }
         return this;
     }
 
     public OutByteBuffer writeShort(int value) {
-        buffer.putShort((short) value);
+        ensure(Short.BYTES);
+        array[position++] = (byte) (value >> BITS_IN_A_BYTE);
+        array[position++] = (byte) value;
         return this;
     }
 
     public OutByteBuffer writeLEShort(int value) {
-        buffer.put((byte) value);
-        buffer.put((byte) (value >> BITS_IN_A_BYTE));
+        ensure(Short.BYTES);
+        array[position++] = (byte) value;
+        array[position++] = (byte) (value >> BITS_IN_A_BYTE);
         return this;
     }
 
     public OutByteBuffer writeLEShortA(int value) {
-        buffer.put((byte) (value + (BITS_IN_A_BYTE * 16)));
-        buffer.put((byte) (value >> BITS_IN_A_BYTE));
+        ensure(Short.BYTES);
+        array[position++] = (byte) (value + (BITS_IN_A_BYTE * 16));
+        array[position++] = (byte) (value >> BITS_IN_A_BYTE);
         return this;
     }
 
     public OutByteBuffer writeBEInt(int value) {
-        buffer.put((byte) (value >> (BITS_IN_A_BYTE * 2)));
-        buffer.put((byte) (value >> (BITS_IN_A_BYTE * 3)));
-        buffer.put((byte) value);
-        buffer.put((byte) (value >> (BITS_IN_A_BYTE * 1)));
+        ensure(Integer.BYTES);
+        array[position++] = (byte) (value >> (BITS_IN_A_BYTE * 2));
+        array[position++] = (byte) (value >> (BITS_IN_A_BYTE * 3));
+        array[position++] = (byte) value;
+        array[position++] = (byte) (value >> (BITS_IN_A_BYTE * 1));
         return this;
     }
 
     public OutByteBuffer writeInvInteger(int value) {
-        buffer.put((byte) (value >> (BITS_IN_A_BYTE * 1)));
-        buffer.put((byte) (value));
-        buffer.put((byte) (value >> (BITS_IN_A_BYTE * 3)));
-        buffer.put((byte) (value >> (BITS_IN_A_BYTE * 2)));
+        ensure(Integer.BYTES);
+        array[position++] = (byte) (value >> (BITS_IN_A_BYTE * 1));
+        array[position++] = (byte) (value);
+        array[position++] = (byte) (value >> (BITS_IN_A_BYTE * 3));
+        array[position++] = (byte) (value >> (BITS_IN_A_BYTE * 2));
         return this;
     }
 
     public OutByteBuffer writeShortA(int value) {
-        buffer.put((byte) (value >> BITS_IN_A_BYTE));
-        buffer.put((byte) (value + (BITS_IN_A_BYTE * 16)));
+        ensure(Short.BYTES);
+        array[position++] = (byte) (value >> BITS_IN_A_BYTE);
+        array[position++] = (byte) (value + (BITS_IN_A_BYTE * 16));
         return this;
     }
 
     public OutByteBuffer writeString(String string) {
-        buffer.put(string.getBytes(StandardCharsets.US_ASCII));
-        buffer.put((byte) STRING_TERMINATION);
+        final int length = string.length();
+        ensure(length + Byte.BYTES);
+        for (int index = 0; index < length; index++) {
+            final char character = string.charAt(index);
+
+            /**
+             * Encodes as US-ASCII without allocating, replacing characters
+             * outside of it.
+             */
+            array[position++] = (byte) (character < 0x80 ? character : '?');
+        }
+        array[position++] = (byte) STRING_TERMINATION;
         return this;
     }
 
     public OutByteBuffer writeBytes(byte[] source) {
-        buffer.put(source);
+        ensure(source.length);
+        System.arraycopy(source, 0, array, position, source.length);
+        position += source.length;
         return this;
     }
 
+    /**
+     * Writes the bytes of a buffer that precede its position.
+     *
+     * @param source The buffer.
+     * @return This buffer.
+     */
     public OutByteBuffer writeBytes(ByteBuffer source) {
-        IntStream.range(0, source.position()).forEach(index -> {
-            writeByte(source.get(index));
-        });
+        final int length = source.position();
+        ensure(length);
+        source.get(0, array, position, length);
+        position += length;
         return this;
     }
 
@@ -168,11 +228,21 @@ public class OutByteBuffer {
         switch (access) {
 
             case BIT_ACCESS:
-                b_position = buffer.position() * BITS_IN_A_BYTE;
+                accumulator = 0;
+                bits = 0;
                 break;
 
             case BYTE_ACCESS:
-                buffer.position((b_position + 7) / BITS_IN_A_BYTE);
+                store();
+                if (bits > 0) {
+
+                    /**
+                     * Pads the final partial byte with zeroes.
+                     */
+                    ensure(Byte.BYTES);
+                    array[position++] = (byte) (accumulator << (BITS_IN_A_BYTE - bits));
+                    bits = 0;
+                }
                 break;
         }
         this.access = access;
@@ -180,65 +250,91 @@ public class OutByteBuffer {
     }
 
     public OutByteBuffer writeBits(int amount, int value) {
-        int position = b_position >> 3;
-        int offset = BITS_IN_A_BYTE - (b_position & 7);
-        b_position = (b_position + amount);
-        int capacity = position - buffer.position() + 1;
-        capacity += (amount + 7) / BITS_IN_A_BYTE;
-        if (buffer.remaining() < capacity) {
-            ByteBuffer old = buffer;
-            buffer = ByteBuffer.allocate(old.capacity() + capacity);
-            old.flip();
-            buffer.put(old);
-        }
-        for (; amount > offset; offset = BITS_IN_A_BYTE) {
-            byte tmp = buffer.get(position);
-            tmp &= ~BIT_MASK[offset];
-            tmp |= (value >> (amount - offset)) & BIT_MASK[offset];
-            buffer.put(position++, tmp);
-            amount -= offset;
-        }
-        if (amount == offset) {
-            byte tmp = buffer.get(position);
-            tmp &= ~BIT_MASK[offset];
-            tmp |= value & BIT_MASK[offset];
-            buffer.put(position, tmp);
-        } else {
-            byte tmp = buffer.get(position);
-            tmp &= ~(BIT_MASK[amount] << (offset - amount));
-            tmp |= (value & BIT_MASK[amount]) << (offset - amount);
-            buffer.put(position, tmp);
-        }
+        if (bits + amount > Long.SIZE)
+            store();
+        accumulator = (accumulator << amount) | (value & ((1L << amount) - 1));
+        bits += amount;
         return this;
     }
 
+    /**
+     * Stores every whole byte held by the accumulator, leaving fewer than
+     * eight bits behind.
+     */
+    private void store() {
+        ensure(bits / BITS_IN_A_BYTE);
+        while (bits >= BITS_IN_A_BYTE) {
+            bits -= BITS_IN_A_BYTE;
+            array[position++] = (byte) (accumulator >>> bits);
+        }
+    }
+
     public int position() {
-        return buffer.position();
+        return position;
     }
 
     public int limit() {
-        return buffer.limit();
+        return limit;
     }
 
     public void flip() {
-        buffer.flip();
+        limit = position;
+        position = 0;
     }
 
-    public OutByteBuffer(ByteBuffer buffer) {
-        this.buffer = buffer;
+    /**
+     * Empties this buffer so that it can be written again, keeping its
+     * capacity.
+     */
+    public void clear() {
+        position = 0;
+        limit = array.length;
+        accumulator = 0;
+        bits = 0;
+        access = OutByteBufferAccess.BYTE_ACCESS;
     }
 
-    public ByteBuffer getBuffer() {
-        return buffer;
+    /**
+     * Returns this buffer's array to the pool. The buffer is left empty and
+     * leases a new array if it is written again.
+     */
+    public void release() {
+        final byte[] released = array;
+        array = EMPTY;
+        view = ByteBuffer.wrap(array);
+        clear();
+        ARRAYS.release(released);
     }
 
-    private void setBuffer(ByteBuffer buffer) {
-        this.buffer = buffer;
+    /**
+     * Grows this buffer if fewer than the given amount of bytes remain. The
+     * capacity is at least doubled, so that a reused buffer soon settles at
+     * the size of the largest packet it is written with.
+     *
+     * @param bytes The amount of bytes about to be written.
+     */
+    private void ensure(int bytes) {
+        if (array.length - position >= bytes)
+            return;
+        final byte[] old = array;
+        array = ARRAYS.lease(Math.max(old.length * 2, position + bytes));
+        System.arraycopy(old, 0, array, 0, position);
+        if (limit == old.length)
+            limit = array.length;
+        view = ByteBuffer.wrap(array);
+        ARRAYS.release(old);
     }
 
-    static {
-        for (int mask = 0; mask < BIT_MASK.length; mask++) {
-            BIT_MASK[mask] = (1 << mask) - 1;
-        }
+    /**
+     * Returns a view of this buffer's array with the same position and limit.
+     * Only valid until this buffer is next written, as the array may be
+     * replaced when it grows.
+     *
+     * @return The view.
+     */
+    public ByteBuffer getBuffer() {
+        view.limit(limit);
+        view.position(position);
+        return view;
     }
 }
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2019 Dylan Vicchiarelli
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.florence.net;
+
+import com.florence.net.packet.PacketPriority;
+import com.florence.util.IsaacKeystream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+/**
+ * Queues a connection's game frames in one lane per priority and releases
+ * them onto the wire highest priority first. Critical and update frames are
+ * always released; interface and cosmetic frames are released only while the
+ * connection's token bucket holds tokens and its socket is keeping up, so
+ * that congestion delays chat rather than the update frame. Not thread safe.
+ *
+ * Opcodes are encrypted as frames are released rather than as they are
+ * encoded, as the keystream must follow the order frames reach the client.
+ * Read-only frames are shared between connections and are never written to;
+ * their encrypted opcode is released on its own, ahead of a view of the rest
+ * of the frame.
+ */
+public class OutboundShaper {
+
+    /**
+     * The default amount of bytes per second that refill the token bucket.
+     */
+    public static final int DEFAULT_RATE = 32 * 1024;
+
+    /**
+     * The default amount of tokens the bucket holds at most.
+     */
+    public static final int DEFAULT_BURST = 16 * 1024;
+
+    /**
+     * The maximum amount of cosmetic frames that may be waiting.
+     */
+    public static final int COSMETIC_CAPACITY = 64;
+
+    private static final class Frame {
+
+        private ByteBuffer buffer;
+        private final Object key;
+
+        private Frame(ByteBuffer buffer, Object key) {
+            this.buffer = buffer;
+            this.key = key;
+        }
+    }
+
+    private static final PacketPriority[] PRIORITIES = PacketPriority.values();
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ArrayDeque<Frame>[] lanes = new ArrayDeque[PRIORITIES.length];
+
+    /**
+     * The waiting frames that a newer frame with the same key replaces.
+     */
+    private final HashMap<Object, Frame> coalescing = new HashMap<>();
+    private final int rate;
+    private final int burst;
+    private long tokens;
+    private long refilled;
+
+    /**
+     * The amount of bytes waiting in every lane.
+     */
+    private int queued;
+    private long coalesced;
+    private long discarded;
+
+    public OutboundShaper() {
+        this(DEFAULT_RATE, DEFAULT_BURST);
+    }
+
+    public OutboundShaper(int rate, int burst) {
+        this.rate = rate;
+        this.burst = burst;
+        this.tokens = burst;
+        this.refilled = System.currentTimeMillis();
+        for (int index = 0; index < lanes.length; index++) {
+            lanes[index] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Queues a frame whose opcode has yet to be encrypted.
+     *
+     * @param buffer The frame, ready to be read.
+     * @param priority The frame's priority.
+     * @param key The key of the state this frame replaces, or null.
+     */
+    public void queue(ByteBuffer buffer, PacketPriority priority, Object key) {
+        queued += buffer.remaining();
+        if (key != null) {
+            final Frame waiting = coalescing.get(key);
+            if (waiting != null) {
+
+                /**
+                 * Only the latest state is worth sending, in the place of
+                 * the frame it replaces.
+                 */
+                queued -= waiting.buffer.remaining();
+                waiting.buffer = buffer;
+                coalesced++;
+                return;
+            }
+        }
+        final Frame frame = new Frame(buffer, key);
+        final ArrayDeque<Frame> lane = lanes[priority.ordinal()];
+        lane.add(frame);
+        if (key != null)
+            coalescing.put(key, frame);
+        if (priority == PacketPriority.COSMETIC && lane.size() > COSMETIC_CAPACITY) {
+            forget(lane.poll());
+            discarded++;
+        }
+    }
+
+    /**
+     * Releases frames onto the wire, encrypting their opcodes.
+     *
+     * @param wire The frames waiting to be written.
+     * @param encryption The opcode keystream.
+     * @param congested Denotes if the socket is falling behind, in which case
+     * frames that may be deferred are.
+     * @return The amount of bytes released.
+     */
+    public int release(ArrayDeque<ByteBuffer> wire, IsaacKeystream encryption, boolean congested) {
+        final long now = System.currentTimeMillis();
+        tokens = Math.min(burst, tokens + (now - refilled) * rate / 1000);
+        refilled = now;
+        int released = 0;
+        for (PacketPriority priority : PRIORITIES) {
+            final boolean deferrable = priority.compareTo(PacketPriority.INTERFACE) >= 0;
+            if (deferrable && congested)
+                break;
+            final ArrayDeque<Frame> lane = lanes[priority.ordinal()];
+            Frame frame;
+            while ((frame = lane.peek()) != null) {
+                if (deferrable && tokens <= 0)
+                    return released;
+                lane.poll();
+                forget(frame);
+                final ByteBuffer buffer = frame.buffer;
+                final int position = buffer.position();
+                final int length = buffer.remaining();
+                final byte opcode = (byte) (buffer.get(position) + encryption.getNextValue());
+                if (buffer.isReadOnly()) {
+                    wire.add(ByteBuffer.allocate(Byte.BYTES).put(opcode).flip());
+                    if (length > Byte.BYTES)
+                        wire.add(buffer.position(position + Byte.BYTES));
+                } else {
+                    buffer.put(position, opcode);
+                    wire.add(buffer);
+                }
+
+                /**
+                 * Frames that are never deferred still spend tokens, so that
+                 * they crowd out the frames that are.
+                 */
+                tokens = Math.max(-burst, tokens - length);
+                released += length;
+            }
+        }
+        return released;
+    }
+
+    /**
+     * Releases every waiting frame regardless of congestion, such as before
+     * a connection is closed.
+     */
+    public int flush(ArrayDeque<ByteBuffer> wire, IsaacKeystream encryption) {
+        tokens = Long.MAX_VALUE / 2;
+        final int released = release(wire, encryption, false);
+        tokens = 0;
+        return released;
+    }
+
+    private void forget(Frame frame) {
+        queued -= frame.buffer.remaining();
+        if (frame.key != null)
+            coalescing.remove(frame.key);
+    }
+
+    public boolean isEmpty() {
+        return queued == 0;
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+
+    public long getCoalesced() {
+        return coalesced;
+    }
+
+    public long getDiscarded() {
+        return discarded;
+    }
+}
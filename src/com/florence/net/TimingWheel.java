@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2019 Dylan Vicchiarelli
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.florence.net;
+
+import java.util.function.Consumer;
+
+/**
+ * A hashed timing wheel. Deadlines are rounded up to the wheel's resolution
+ * and hashed into a slot, so that scheduling, rescheduling and canceling a
+ * timeout are constant time operations. Not thread safe.
+ *
+ * @param <T> The type of value that times out.
+ */
+public class TimingWheel<T> {
+
+    /**
+     * The default duration in milliseconds of each tick.
+     */
+    public static final int DEFAULT_RESOLUTION = 250;
+
+    /**
+     * The default amount of slots. Must be a power of two.
+     */
+    public static final int DEFAULT_SLOTS = 256;
+
+    public static final class Timeout<T> {
+
+        private final T value;
+
+        /**
+         * The tick at which this timeout expires.
+         */
+        private long deadline;
+        private Timeout<T> previous;
+        private Timeout<T> next;
+
+        private Timeout(T value) {
+            this.value = value;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public boolean isScheduled() {
+            return previous != null;
+        }
+    }
+
+    /**
+     * The sentinel of each slot's circular list.
+     */
+    private final Timeout<T>[] slots;
+    private final int mask;
+    private final int resolution;
+    private final long origin;
+
+    /**
+     * The last tick that has been processed.
+     */
+    private long tick;
+    private int size;
+
+    public TimingWheel() {
+        this(DEFAULT_RESOLUTION, DEFAULT_SLOTS);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimingWheel(int resolution, int slots) {
+        if (Integer.bitCount(slots) != 1)
+            throw new IllegalArgumentException("The amount of slots must be a power of two.");
+        this.slots = new Timeout[slots];
+        for (int slot = 0; slot < slots; slot++) {
+            final Timeout<T> sentinel = new Timeout<>(null);
+            sentinel.previous = sentinel.next = sentinel;
+            this.slots[slot] = sentinel;
+        }
+        this.mask = slots - 1;
+        this.resolution = resolution;
+        this.origin = System.currentTimeMillis();
+    }
+
+    /**
+     * Creates an unscheduled timeout.
+     *
+     * @param value The value that times out.
+     * @return The timeout.
+     */
+    public Timeout<T> create(T value) {
+        return new Timeout<>(value);
+    }
+
+    /**
+     * Schedules a timeout, replacing its deadline if already scheduled.
+     *
+     * @param timeout The timeout.
+     * @param delay The delay in milliseconds.
+     */
+    public void schedule(Timeout<T> timeout, long delay) {
+        cancel(timeout);
+
+        /**
+         * An empty wheel is not advanced while its owner blocks, so it is
+         * caught up before the deadline is measured from it.
+         */
+        if (size == 0)
+            tick = Math.max(tick, (System.currentTimeMillis() - origin) / resolution);
+        timeout.deadline = tick + Math.max(1, (delay + resolution - 1) / resolution);
+        final Timeout<T> sentinel = slots[(int) (timeout.deadline & mask)];
+        timeout.previous = sentinel.previous;
+        timeout.next = sentinel;
+        sentinel.previous.next = timeout;
+        sentinel.previous = timeout;
+        size++;
+    }
+
+    public void cancel(Timeout<T> timeout) {
+        if (timeout.previous == null)
+            return;
+        timeout.previous.next = timeout.next;
+        timeout.next.previous = timeout.previous;
+        timeout.previous = timeout.next = null;
+        size--;
+    }
+
+    /**
+     * Processes every tick that has elapsed, passing each expired value to a
+     * handler. Expired timeouts are unscheduled before their handler is
+     * invoked, so a handler may schedule them again.
+     *
+     * @param handler The handler.
+     */
+    public void advance(Consumer<T> handler) {
+        final long target = (System.currentTimeMillis() - origin) / resolution;
+        while (tick < target) {
+            if (size == 0) {
+                tick = target;
+                break;
+            }
+            tick++;
+            final Timeout<T> sentinel = slots[(int) (tick & mask)];
+            Timeout<T> timeout = sentinel.next;
+            while (timeout != sentinel) {
+                final Timeout<T> next = timeout.next;
+                if (timeout.deadline <= tick) {
+                    cancel(timeout);
+                    handler.accept(timeout.value);
+                }
+                timeout = next;
+            }
+        }
+    }
+
+    /**
+     * Returns the time until the next tick is due, or zero if nothing is
+     * scheduled, in which case the owner may block until woken.
+     *
+     * @return The time in milliseconds, at least one unless zero.
+     */
+    public long untilNextTick() {
+        if (size == 0)
+            return 0;
+        return Math.max(1, origin + (tick + 1) * resolution - System.currentTimeMillis());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getResolution() {
+        return resolution;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2019 Dylan Vicchiarelli
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.florence.net.buffer;
+
+import java.util.ArrayDeque;
+
+/**
+ * A pool of heap arrays in power of two size classes, used to back buffers
+ * that grow. An array that a buffer has outgrown is returned here rather than
+ * discarded, so that buffers which grow in turn reuse it.
+ */
+public class ArrayPool {
+
+    /**
+     * The capacity of the smallest size class.
+     */
+    public static final int MINIMUM_CAPACITY = 256;
+
+    private final ArrayDeque<byte[]>[] classes;
+
+    /**
+     * The maximum amount of arrays kept in each size class.
+     */
+    private final int retained;
+    private long leases;
+    private long allocations;
+
+    /**
+     * Creates a pool.
+     *
+     * @param maximumCapacity The capacity of the largest size class. Larger
+     * arrays are allocated on demand and never kept.
+     * @param retained The maximum amount of arrays kept in each size class.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ArrayPool(int maximumCapacity, int retained) {
+        this.classes = new ArrayDeque[index(maximumCapacity) + 1];
+        this.retained = retained;
+        for (int index = 0; index < classes.length; index++) {
+            classes[index] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Leases an array of at least the specified capacity. Its contents are
+     * undefined.
+     *
+     * @param capacity The minimum capacity.
+     * @return The leased array.
+     */
+    public byte[] lease(int capacity) {
+        final int index = index(capacity);
+        if (index >= classes.length)
+            return new byte[capacity];
+        synchronized (classes) {
+            leases++;
+            final byte[] array = classes[index].poll();
+            if (array != null)
+                return array;
+            allocations++;
+        }
+        return new byte[MINIMUM_CAPACITY << index];
+    }
+
+    /**
+     * Returns an array to its size class. Arrays that were not leased from
+     * this pool, or that would exceed the amount kept, are discarded.
+     *
+     * @param array The array, which the caller must not use afterwards.
+     */
+    public void release(byte[] array) {
+        final int length = array.length;
+        if (length < MINIMUM_CAPACITY || Integer.bitCount(length) != 1)
+            return;
+        final int index = index(length);
+        if (index >= classes.length)
+            return;
+        synchronized (classes) {
+            if (classes[index].size() < retained)
+                classes[index].push(array);
+        }
+    }
+
+    /**
+     * Returns the size class that holds arrays of the specified capacity.
+     *
+     * @param capacity The capacity.
+     * @return The index of the size class.
+     */
+    private static int index(int capacity) {
+        if (capacity <= MINIMUM_CAPACITY)
+            return 0;
+        return Integer.SIZE - Integer.numberOfLeadingZeros(capacity - 1) - Integer.numberOfTrailingZeros(MINIMUM_CAPACITY);
+    }
+
+    public long getLeases() {
+        synchronized (classes) {
+            return leases;
+        }
+    }
+
+    /**
+     * Returns the amount of leases that had to allocate an array because its
+     * size class was empty.
+     *
+     * @return The returned amount.
+     */
+    public long getAllocations() {
+        synchronized (classes) {
+            return allocations;
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (classes) {
+            return "ArrayPool[classes=" + classes.length + ", leases=" + leases + ", allocations=" + allocations + "]";
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2019 Dylan Vicchiarelli
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.florence.net.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+/**
+ * A pool of equally sized direct buffers carved out of larger slabs.
+ *
+ * Socket reads and writes that use heap buffers are copied by the runtime
+ * through a temporary direct buffer. Leasing direct chunks from this pool
+ * for each read and flush avoids that copy, and returning them
+ * deterministically keeps native memory bounded without relying on garbage
+ * collection.
+ */
+public class BufferPool {
+
+    /**
+     * The default amount of chunks carved out of each slab.
+     */
+    public static final int DEFAULT_SLAB_CHUNKS = 256;
+
+    /**
+     * The time in milliseconds that a chunk may be leased before it is
+     * reported as leaked.
+     */
+    public static final int LEAK_THRESHOLD = 60000;
+
+    private final int chunkCapacity;
+    private final int slabChunks;
+    private final int maximumSlabs;
+
+    /**
+     * Chunks that are available to be leased.
+     */
+    private final ArrayDeque<PooledBuffer> available = new ArrayDeque<>();
+
+    /**
+     * Every chunk that has been carved out of a slab.
+     */
+    private final ArrayList<PooledBuffer> chunks = new ArrayList<>();
+
+    private int slabs;
+    private int live;
+    private int peak;
+    private long leases;
+    private long overflows;
+
+    public BufferPool(int chunkCapacity, int maximumSlabs) {
+        this(chunkCapacity, DEFAULT_SLAB_CHUNKS, maximumSlabs);
+    }
+
+    public BufferPool(int chunkCapacity, int slabChunks, int maximumSlabs) {
+        this.chunkCapacity = chunkCapacity;
+        this.slabChunks = slabChunks;
+        this.maximumSlabs = maximumSlabs;
+    }
+
+    /**
+     * Leases a cleared chunk. A new slab is allocated if no chunk is
+     * available, and once the maximum amount of slabs has been reached an
+     * unpooled chunk is allocated instead.
+     *
+     * @return The leased chunk.
+     */
+    public PooledBuffer lease() {
+        PooledBuffer chunk;
+        synchronized (available) {
+            if (available.isEmpty() && slabs < maximumSlabs)
+                allocate();
+            chunk = available.poll();
+            if (chunk == null) {
+                chunk = new PooledBuffer(this, ByteBuffer.allocateDirect(chunkCapacity), false);
+                overflows++;
+            }
+            chunk.setLeased(true);
+            chunk.setLeasedAt(System.currentTimeMillis());
+            leases++;
+            if (++live > peak)
+                peak = live;
+        }
+        chunk.getBuffer().clear();
+        return chunk;
+    }
+
+    void release(PooledBuffer chunk) {
+        synchronized (available) {
+            if (!chunk.isLeased())
+                throw new IllegalStateException("This buffer has already been released.");
+            chunk.setLeased(false);
+            live--;
+            if (chunk.isPooled())
+                available.push(chunk);
+        }
+    }
+
+    private void allocate() {
+        final ByteBuffer slab = ByteBuffer.allocateDirect(chunkCapacity * slabChunks);
+        for (int index = 0; index < slabChunks; index++) {
+            slab.limit((index + 1) * chunkCapacity);
+            slab.position(index * chunkCapacity);
+            final PooledBuffer chunk = new PooledBuffer(this, slab.slice(), true);
+            chunks.add(chunk);
+            available.add(chunk);
+        }
+        slabs++;
+    }
+
+    /**
+     * Returns the amount of chunks that are currently leased.
+     *
+     * @return The returned amount.
+     */
+    public int getLive() {
+        synchronized (available) {
+            return live;
+        }
+    }
+
+    /**
+     * Returns the largest amount of chunks that have been leased at once.
+     *
+     * @return The returned amount.
+     */
+    public int getPeak() {
+        synchronized (available) {
+            return peak;
+        }
+    }
+
+    /**
+     * Returns the amount of slab chunks that have been leased for longer than
+     * {@link #LEAK_THRESHOLD}.
+     *
+     * @return The returned amount.
+     */
+    public int getLeaked() {
+        final long now = System.currentTimeMillis();
+        int leaked = 0;
+        synchronized (available) {
+            for (PooledBuffer chunk : chunks) {
+                if (chunk.isLeased() && now - chunk.getLeasedAt() >= LEAK_THRESHOLD)
+                    leaked++;
+            }
+        }
+        return leaked;
+    }
+
+    public long getLeases() {
+        synchronized (available) {
+            return leases;
+        }
+    }
+
+    /**
+     * Returns the amount of unpooled chunks that had to be allocated because
+     * this pool was exhausted.
+     *
+     * @return The returned amount.
+     */
+    public long getOverflows() {
+        synchronized (available) {
+            return overflows;
+        }
+    }
+
+    public int getChunkCapacity() {
+        return chunkCapacity;
+    }
+
+    public int getSlabs() {
+        synchronized (available) {
+            return slabs;
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (available) {
+            return "BufferPool[capacity=" + chunkCapacity + ", slabs=" + slabs + ", live=" + live
+                    + ", peak=" + peak + ", leaked=" + getLeaked() + ", overflows=" + overflows + "]";
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2019 Dylan Vicchiarelli
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.florence.net.buffer;
+
+/**
+ * A set of buffer pools, one per size class. Leases are served by the
+ * smallest class that satisfies the requested capacity.
+ */
+public class BufferPoolGroup {
+
+    private final BufferPool[] pools;
+
+    public BufferPoolGroup(int[] capacities, int maximumSlabs) {
+        this.pools = new BufferPool[capacities.length];
+        for (int index = 0; index < capacities.length; index++) {
+            if (index > 0 && capacities[index] <= capacities[index - 1])
+                throw new IllegalArgumentException("Size classes must be in ascending order.");
+            pools[index] = new BufferPool(capacities[index], maximumSlabs);
+        }
+    }
+
+    /**
+     * Leases a chunk of at least the specified capacity.
+     *
+     * @param capacity The minimum capacity.
+     * @return The leased chunk.
+     */
+    public PooledBuffer lease(int capacity) {
+        for (BufferPool pool : pools) {
+            if (pool.getChunkCapacity() >= capacity)
+                return pool.lease();
+        }
+        throw new IllegalArgumentException("No size class can hold " + capacity + " bytes.");
+    }
+
+    public int getMaximumCapacity() {
+        return pools[pools.length - 1].getChunkCapacity();
+    }
+
+    public BufferPool[] getPools() {
+        return pools;
+    }
+
+    /**
+     * Returns the amount of chunks that are currently leased across every
+     * size class.
+     *
+     * @return The returned amount.
+     */
+    public int getLive() {
+        int live = 0;
+        for (BufferPool pool : pools) {
+            live += pool.getLive();
+        }
+        return live;
+    }
+
+    /**
+     * Returns the amount of bytes that are currently leased across every size
+     * class.
+     *
+     * @return The returned amount.
+     */
+    public long getLiveBytes() {
+        long bytes = 0;
+        for (BufferPool pool : pools) {
+            bytes += (long) pool.getLive() * pool.getChunkCapacity();
+        }
+        return bytes;
+    }
+
+    public int getLeaked() {
+        int leaked = 0;
+        for (BufferPool pool : pools) {
+            leaked += pool.getLeaked();
+        }
+        return leaked;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("BufferPoolGroup[");
+        for (int index = 0; index < pools.length; index++) {
+            builder.append(index == 0 ? "" : ", ").append(pools[index]);
+        }
+        return builder.append("]").toString();
+    }
+}
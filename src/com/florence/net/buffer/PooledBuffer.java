@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2019 Dylan Vicchiarelli
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.florence.net.buffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A lease on a fixed-size chunk of a {@link BufferPool}. Each chunk keeps
+ * the same lease object for its entire life so that leasing and releasing
+ * never allocate.
+ */
+public final class PooledBuffer {
+
+    private final BufferPool pool;
+    private final ByteBuffer buffer;
+
+    /**
+     * A read-only view of this chunk that slices are taken from.
+     */
+    private final ByteBuffer view;
+
+    /**
+     * Denotes if this chunk belongs to a slab. Chunks allocated after the
+     * pool has been exhausted are discarded when released.
+     */
+    private final boolean pooled;
+
+    /**
+     * Denotes if this chunk is currently leased.
+     */
+    private boolean leased;
+
+    /**
+     * The time in milliseconds at which this chunk was last leased.
+     */
+    private long leasedAt;
+
+    PooledBuffer(BufferPool pool, ByteBuffer buffer, boolean pooled) {
+        this.pool = pool;
+        this.buffer = buffer;
+        this.view = buffer.asReadOnlyBuffer();
+        this.pooled = pooled;
+    }
+
+    /**
+     * Returns this chunk to its pool. The caller must not use the chunk
+     * afterwards.
+     */
+    public void release() {
+        pool.release(this);
+    }
+
+    /**
+     * Creates a read-only slice of this chunk. The slice is only valid until
+     * the chunk is next compacted or released.
+     *
+     * @param index The index of the first byte.
+     * @param length The amount of bytes.
+     * @return The created slice.
+     */
+    public ByteBuffer slice(int index, int length) {
+        return view.slice(index, length);
+    }
+
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    public BufferPool getPool() {
+        return pool;
+    }
+
+    public int capacity() {
+        return buffer.capacity();
+    }
+
+    boolean isPooled() {
+        return pooled;
+    }
+
+    boolean isLeased() {
+        return leased;
+    }
+
+    void setLeased(boolean leased) {
+        this.leased = leased;
+    }
+
+    long getLeasedAt() {
+        return leasedAt;
+    }
+
+    void setLeasedAt(long leasedAt) {
+        this.leasedAt = leasedAt;
+    }
+}
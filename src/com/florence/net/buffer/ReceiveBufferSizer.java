@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2019 Dylan Vicchiarelli
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.florence.net.buffer;
+
+/**
+ * Predicts the size of a connection's next receive buffer from the size of
+ * its recent reads. Reads that repeatedly fill their buffer move the
+ * connection up a size class, and a sustained run of small reads moves it
+ * back down.
+ */
+public class ReceiveBufferSizer {
+
+    /**
+     * The receive buffer size classes, in ascending order.
+     */
+    public static final int[] SIZE_CLASSES = {128, 256, 512, 1024, 2048, 4096};
+
+    /**
+     * The amount of consecutive reads that must fill their buffer before the
+     * next size class is used.
+     */
+    public static final int GROW_THRESHOLD = 2;
+
+    /**
+     * The amount of consecutive reads that must fit within half of the
+     * previous size class before that size class is used.
+     */
+    public static final int SHRINK_THRESHOLD = 64;
+
+    private int index;
+    private int fills;
+    private int lows;
+
+    private long reads;
+    private long bytes;
+    private int grows;
+    private int shrinks;
+
+    public ReceiveBufferSizer(int capacity) {
+        while (index < SIZE_CLASSES.length - 1 && SIZE_CLASSES[index] < capacity) {
+            index++;
+        }
+    }
+
+    /**
+     * Records the outcome of a read.
+     *
+     * @param read The amount of bytes read.
+     * @param available The amount of space that was available for the read.
+     */
+    public void record(int read, int available) {
+        reads++;
+        bytes += read;
+        if (read >= available) {
+            lows = 0;
+            if (++fills >= GROW_THRESHOLD && index < SIZE_CLASSES.length - 1) {
+                index++;
+                fills = 0;
+                grows++;
+            }
+        } else {
+            fills = 0;
+            if (index > 0 && read <= SIZE_CLASSES[index - 1] / 2) {
+                if (++lows >= SHRINK_THRESHOLD) {
+                    index--;
+                    lows = 0;
+                    shrinks++;
+                }
+            } else {
+                lows = 0;
+            }
+        }
+    }
+
+    /**
+     * Moves to the next size class regardless of recent reads, such as when a
+     * single frame does not fit within the current size class.
+     */
+    public void grow() {
+        if (index < SIZE_CLASSES.length - 1) {
+            index++;
+            grows++;
+        }
+    }
+
+    /**
+     * Returns the capacity that the next receive buffer should have.
+     *
+     * @return The returned capacity.
+     */
+    public int getCapacity() {
+        return SIZE_CLASSES[index];
+    }
+
+    public long getReads() {
+        return reads;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public int getGrows() {
+        return grows;
+    }
+
+    public int getShrinks() {
+        return shrinks;
+    }
+
+    @Override
+    public String toString() {
+        return "ReceiveBufferSizer[capacity=" + getCapacity() + ", reads=" + reads + ", bytes=" + bytes
+                + ", grows=" + grows + ", shrinks=" + shrinks + "]";
+    }
+}
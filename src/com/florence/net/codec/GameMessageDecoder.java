@@ -17,50 +17,98 @@
 package com.florence.net.codec;
 
 import com.florence.model.GameConstants;
+import com.florence.model.World;
+import com.florence.model.player.Player;
 import com.florence.net.Client;
+import com.florence.net.packet.Message;
 import com.florence.net.packet.Packet;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 
 public class GameMessageDecoder implements MessageDecoder {
 
+    /**
+     * The opcode of the frame currently being reassembled, or -1 if the next
+     * byte begins a new frame. The opcode is retained across reads as its
+     * decryption advances the cipher.
+     */
+    private int opcode = -1;
+
+    /**
+     * The length of the frame currently being reassembled, or -1 if its
+     * length has yet to be read.
+     */
+    private int length = -1;
+
+    /**
+     * The payload of frames that carry no data.
+     */
+    private static final ByteBuffer EMPTY_PAYLOAD = ByteBuffer.allocate(0).asReadOnlyBuffer();
+
     @Override
-    public boolean decode(Client client) {
-        int opcode = client.getBuffer().get() - client.getDecryption().getNextValue() & 0xFF;
-        int length = GameConstants.PACKET_SIZES_317[opcode];
+    public DecodeState decode(Client client) {
+        if (opcode == -1) {
+            opcode = client.getBuffer().get() - client.getDecryption().getNextValue() & 0xFF;
+            length = GameConstants.PACKET_SIZES_317[opcode];
+        }
         if (length == -1) {
-            if (client.getBuffer().hasRemaining()) {
+            if (!client.getBuffer().hasRemaining())
+                return DecodeState.UNDERFLOW;
 
-                /**
-                 * The length can't be estimated and must be manually read.
-                 */
-                length = client.getBuffer().get() & 0xFF;
-            } else {
-                System.out.println("Underflow of data while reading length for frame " + opcode + ". "
-                        + "Compacting bytes.");
-                client.getBuffer().compact();
-            }
+            /**
+             * The length can't be estimated and must be manually read.
+             */
+            length = client.getBuffer().get() & 0xFF;
         }
         if (client.getBuffer().remaining() < length) {
 
             /**
-             * There is an insufficient amount of data.
+             * The rest of this frame has yet to arrive.
              */
-            System.out.println("Underflow of data on frame " + opcode + ". Closing connection.");
-            return false;
+            return DecodeState.UNDERFLOW;
         }
 
-        byte[] payload = new byte[length];
-        client.getBuffer().get(payload);
+        final Packet packet;
+        if (length == 0) {
+            packet = new Packet(opcode, length, EMPTY_PAYLOAD);
+        } else {
 
-        ByteBuffer buffer = ByteBuffer.allocate(length);
-        buffer.put(payload);
-        buffer.flip();
+            /**
+             * The payload is a read-only view of the inbound chunk rather than
+             * a copy. It is parsed below, before the chunk is reused.
+             */
+            final int position = client.getBuffer().position();
+            packet = new Packet(opcode, length, client.getLease().slice(position, length));
+            client.getBuffer().position(position + length);
+        }
+
+        opcode = -1;
+        length = -1;
+
+        /**
+         * Parses and validates the payload here rather than on the world's
+         * thread, which is left only to apply the result.
+         */
+        final Message message;
+        try {
+            message = World.singleton().getPackets().parse(packet);
+        } catch (BufferUnderflowException exception) {
+
+            /**
+             * The payload is shorter than its packet's structure.
+             */
+            return DecodeState.REJECTED;
+        }
 
         /**
-         * Queues this packet for execution on the world's thread. Eliminates
-         * synchronization overhead.
+         * Queues this message for execution on the world's thread. Eliminates
+         * synchronization overhead. Messages from a user still waiting in the
+         * login queue are discarded, as nothing handles them until the user
+         * is admitted and this connection is the one serving them.
          */
-        client.getPlayer().getPackets().add(new Packet(opcode, length, buffer));
-        return true;
+        final Player player = client.getPlayer();
+        if (message != null && player.isConnected() && player.getClient() == client)
+            player.getPackets().add(message);
+        return DecodeState.DECODED;
     }
 }
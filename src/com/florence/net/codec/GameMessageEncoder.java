@@ -16,44 +16,87 @@
  */
 package com.florence.net.codec;
 
+import com.florence.model.player.Player;
 import com.florence.net.Client;
 import com.florence.net.OutByteBuffer;
 import com.florence.net.packet.PacketBuilder;
 import com.florence.net.packet.PacketHeader;
 import java.nio.ByteBuffer;
 
+/**
+ * Encodes the game packets of a single connection. Each packet is written in
+ * place into a buffer that is reused for every packet, so that the only
+ * allocation is the finished frame that waits to be released.
+ */
 public class GameMessageEncoder implements MessageEncoder<PacketBuilder> {
 
+    /**
+     * The initial capacity of the reused buffer. It grows to fit the largest
+     * packet that the connection is sent.
+     */
+    public static final int FRAME_BUFFER_CAPACITY = 1024;
+
+    /**
+     * The buffer that frames are written into. Guarded by its own monitor as
+     * packets are encoded by both the world's thread and the login workers.
+     */
+    private final OutByteBuffer buffer = new OutByteBuffer(FRAME_BUFFER_CAPACITY);
+
     @Override
     public ByteBuffer encode(Client client, PacketBuilder builder) {
-        OutByteBuffer payload = builder.build(client.getPlayer());
-        payload.flip();
+        synchronized (buffer) {
+            buffer.clear();
+            frame(builder, client.getPlayer(), buffer);
+            buffer.flip();
+            return ByteBuffer.allocate(buffer.limit()).put(buffer.getBuffer());
+        }
+    }
+
+    /**
+     * Returns the reused buffer's array to the pool once the connection has
+     * been closed.
+     */
+    public void release() {
+        synchronized (buffer) {
+            buffer.release();
+        }
+    }
 
-        final int opcode = builder.getOpcode();
+    /**
+     * Writes a packet's frame. The length of a variable frame is reserved
+     * ahead of the payload and filled in once the payload has been written.
+     * The opcode is left unencrypted, as it is encrypted once the frame is
+     * released onto the wire and frames may be reordered by priority until
+     * then.
+     *
+     * @param builder The packet.
+     * @param player The user the packet is sent to, or null.
+     * @param target The buffer to write into.
+     */
+    public static void frame(PacketBuilder builder, Player player, OutByteBuffer target) {
         final PacketHeader header = builder.getHeader();
-        int capacity = payload.limit();
+        target.writeByte(builder.getOpcode());
+        final int index = target.position();
+        switch (header) {
 
-        /**
-         * Expands the capacity to the necessary allotment.
-         */
-        capacity += Byte.BYTES;
-        capacity += header.equals(PacketHeader.VARIABLE_BYTE) ? Byte.BYTES
-                : header.equals(PacketHeader.VARIABLE_SHORT) ? Short.BYTES : 0;
+            case VARIABLE_BYTE:
+                target.writeByte(0);
+                break;
 
-        ByteBuffer packet = ByteBuffer.allocate(capacity);
-        packet.put((byte) (opcode + client.getEncryption().getNextValue()));
+            case VARIABLE_SHORT:
+                target.writeShort(0);
+                break;
+        }
+        builder.build(player, target);
         switch (header) {
 
             case VARIABLE_BYTE:
-                packet.put((byte) payload.limit());
+                target.getBuffer().put(index, (byte) (target.position() - index - Byte.BYTES));
                 break;
 
             case VARIABLE_SHORT:
-                packet.putShort((short) payload.limit());
+                target.getBuffer().putShort(index, (short) (target.position() - index - Short.BYTES));
                 break;
         }
-
-        packet.put(payload.getBuffer());
-        return packet;
     }
 }
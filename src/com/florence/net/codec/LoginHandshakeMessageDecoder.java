@@ -21,17 +21,22 @@ import java.security.SecureRandom;
 
 public class LoginHandshakeMessageDecoder implements MessageDecoder {
 
+    /**
+     * Generates each connection's server key. Shared as seeding a new
+     * generator for every handshake is far more costly than drawing from one.
+     */
+    private static final SecureRandom RANDOM = new SecureRandom();
+
     @Override
-    public boolean decode(Client client) {
+    public DecodeState decode(Client client) {
 
         /**
          * Skips the name hash. Theorized to help select a proper login server.
          */
         client.getBuffer().get();
 
-        SecureRandom random = new SecureRandom();
-        client.encode(new LoginHandshakeResponse(0, random.nextLong()));
+        client.encode(new LoginHandshakeResponse(0, RANDOM.nextLong()));
         client.setCodecs(null, new LoginRequestMessageDecoder());
-        return true;
+        return DecodeState.DECODED;
     }
 }
@@ -18,15 +18,30 @@ package com.florence.net.codec;
 
 import com.florence.net.Client;
 import com.florence.util.ByteBufferUtil;
-import com.aranea.cryptography.ISAACCipher;
+import com.florence.util.IsaacKeystream;
 import com.florence.model.player.LoginRequest;
+import com.florence.model.player.Player;
 import com.florence.model.World;
 import com.florence.net.OutByteBuffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 
 public class LoginPayloadMessageDecoder implements MessageDecoder {
 
     private final int length;
 
+    /**
+     * Whether the client is re-establishing a connection that it lost, in
+     * which case a suspended session may be resumed.
+     */
+    private final boolean reconnecting;
+
+    /**
+     * Whether this login has been handed to the login service and is
+     * awaiting its result.
+     */
+    private boolean pending;
+
     /**
      * The release number of the client.
      */
@@ -72,145 +87,269 @@ public class LoginPayloadMessageDecoder implements MessageDecoder {
      */
     public static final int LOGIN_REJECTED_RESPONSE_OPCODE = 11;
 
-    public LoginPayloadMessageDecoder(int length) {
+    /**
+     * Denotes a malformed login to which no response is written.
+     */
+    private static final int MALFORMED = -1;
+
+    public LoginPayloadMessageDecoder(int length, boolean reconnecting) {
         this.length = length;
+        this.reconnecting = reconnecting;
     }
 
     @Override
-    public boolean decode(Client client) {
+    public DecodeState decode(Client client) {
+        if (pending)
+            return DecodeState.UNDERFLOW;
         if (client.getBuffer().remaining() < length)
-            return false;
-        if ((client.getBuffer().get() & 0xFF) != OutByteBuffer.BYTE_CAPACITY)
-            return false;
+            return DecodeState.UNDERFLOW;
 
         /**
-         * Reads the release number of the client.
+         * Copies the payload so that it can be read by a worker while this
+         * connection's chunk continues to be used by its reactor.
          */
-        int release = client.getBuffer().getShort();
-        if (release != RELEASE_NUMBER) {
-            client.encode(new LoginPayloadResponse(LOGIN_REJECTED_RESPONSE_OPCODE, 0, false));
-            return false;
+        final byte[] payload = new byte[length];
+        client.getBuffer().get(payload);
+        if (!World.singleton().getLoginService().submit(() -> authenticate(client, ByteBuffer.wrap(payload)))) {
+            client.encode(new LoginPayloadResponse(WAIT_THEN_TRY_AGAIN_RESPONSE_OPCODE, 0, false));
+            return DecodeState.REJECTED;
         }
+        pending = true;
+        return DecodeState.UNDERFLOW;
+    }
 
-        /**
-         * Reads the client's memory mode.
-         */
-        int memory = client.getBuffer().get() & 0xFF;
-        if (memory != 0 && memory != 1) {
-            client.encode(new LoginPayloadResponse(LOGIN_REJECTED_RESPONSE_OPCODE, 0, false));
-            return false;
-        }
+    /**
+     * Reads and verifies the payload. Called by a login worker.
+     *
+     * @param client The connection.
+     * @param buffer The payload.
+     */
+    private void authenticate(Client client, ByteBuffer buffer) {
+        try {
+            if ((buffer.get() & 0xFF) != OutByteBuffer.BYTE_CAPACITY) {
+                reject(client, MALFORMED);
+                return;
+            }
 
-        /**
-         * Reads the archive redundancy checks.
-         */
-        int crcs[] = new int[CACHE_ARCHIVES];
-        for (int index = 0; index < crcs.length; index++) {
-            crcs[index] = client.getBuffer().getInt();
-        }
+            /**
+             * Reads the release number of the client.
+             */
+            int release = buffer.getShort();
+            if (release != RELEASE_NUMBER) {
+                reject(client, LOGIN_REJECTED_RESPONSE_OPCODE);
+                return;
+            }
 
-        /**
-         * Compares the expected versus the received lengths. Offset appended.
-         */
-        int length_ = client.getBuffer().get() & 0xFF;
-        if (length - (36 + 1 + 1 + 1 + 2) != length_) {
-            client.encode(new LoginPayloadResponse(LOGIN_REJECTED_RESPONSE_OPCODE, 0, false));
-            return false;
-        }
+            /**
+             * Reads the client's memory mode.
+             */
+            int memory = buffer.get() & 0xFF;
+            if (memory != 0 && memory != 1) {
+                reject(client, LOGIN_REJECTED_RESPONSE_OPCODE);
+                return;
+            }
 
-        /**
-         * Reads a test value for RSA encryption.
-         */
-        int rsa = client.getBuffer().get() & 0xFF;
-        if (rsa != RSA_OPCODE) {
-            client.encode(new LoginPayloadResponse(LOGIN_REJECTED_RESPONSE_OPCODE, 0, false));
-            return false;
-        }
+            /**
+             * Reads the archive redundancy checks.
+             */
+            int crcs[] = new int[CACHE_ARCHIVES];
+            for (int index = 0; index < crcs.length; index++) {
+                crcs[index] = buffer.getInt();
+            }
 
-        /**
-         * The client's authorization key.
-         */
-        long clientAuth = client.getBuffer().getLong();
+            /**
+             * Compares the expected versus the received lengths. Offset appended.
+             */
+            int length_ = buffer.get() & 0xFF;
+            if (length - (36 + 1 + 1 + 1 + 2) != length_) {
+                reject(client, LOGIN_REJECTED_RESPONSE_OPCODE);
+                return;
+            }
 
-        /**
-         * The server's authorization key.
-         */
-        long serverAuth = client.getBuffer().getLong();
+            /**
+             * Reads a test value for RSA encryption.
+             */
+            int rsa = buffer.get() & 0xFF;
+            if (rsa != RSA_OPCODE) {
+                reject(client, LOGIN_REJECTED_RESPONSE_OPCODE);
+                return;
+            }
 
-        final int[] seeds = new int[4];
-        seeds[0] = (int) (clientAuth >> 32);
-        seeds[1] = (int) clientAuth;
-        seeds[2] = (int) (serverAuth >> 32);
-        seeds[3] = (int) serverAuth;
+            /**
+             * The client's authorization key.
+             */
+            long clientAuth = buffer.getLong();
 
-        /**
-         * The decryption algorithm.
-         */
-        client.setDecryption(new ISAACCipher(seeds));
+            /**
+             * The server's authorization key.
+             */
+            long serverAuth = buffer.getLong();
 
-        for (int index = 0; index < seeds.length; index++) {
-            seeds[index] += 50;
-        }
+            final int[] seeds = new int[4];
+            seeds[0] = (int) (clientAuth >> 32);
+            seeds[1] = (int) clientAuth;
+            seeds[2] = (int) (serverAuth >> 32);
+            seeds[3] = (int) serverAuth;
 
-        /**
-         * The encryption algorithm.
-         */
-        client.setEncryption(new ISAACCipher(seeds));
+            /**
+             * The decryption algorithm.
+             */
+            final IsaacKeystream decryption = new IsaacKeystream(seeds);
 
-        /**
-         * The unique identification index for this client. Not readily used in
-         * emulation.
-         */
-        client.getBuffer().getInt();
+            for (int index = 0; index < seeds.length; index++) {
+                seeds[index] += 50;
+            }
 
-        /**
-         * The player's username.
-         */
-        String username = ByteBufferUtil.readString(client.getBuffer());
+            /**
+             * The encryption algorithm.
+             */
+            final IsaacKeystream encryption = new IsaacKeystream(seeds);
 
-        /**
-         * The player's password.
-         */
-        String password = ByteBufferUtil.readString(client.getBuffer());
+            /**
+             * The unique identification index for this client. Not readily used
+             * in emulation.
+             */
+            buffer.getInt();
 
-        /**
-         * The result.
-         */
-        int result = SUCCESSFUL_RESPONSE_OPCODE;
+            /**
+             * The player's username.
+             */
+            String username = ByteBufferUtil.readString(buffer);
 
-        /**
-         * This account is already logged in.
-         */
-        result = World.singleton().contains(username) ? ACCOUNT_ACTIVE_RESPONSE_OPCODE : result;
+            /**
+             * The player's password.
+             */
+            String password = ByteBufferUtil.readString(buffer);
+
+            Player existing = World.singleton().getOnline(username);
+            if (existing == null) {
+
+                /**
+                 * The user is only allocated once no session was found to
+                 * resume. Claiming the username here also prevents two
+                 * simultaneous logins to the same account.
+                 */
+                final Player player = new Player(client);
+                if (World.singleton().register(username, player)) {
+
+                    /**
+                     * Profiles are not yet persisted. Once they are, this
+                     * user's profile is loaded here, away from both the
+                     * reactors and the world's thread.
+                     */
+                    complete(client, SUCCESSFUL_RESPONSE_OPCODE, username, password, encryption, decryption, player, false);
+                    return;
+                }
+
+                /**
+                 * Another login claimed this username in the meantime.
+                 */
+                existing = World.singleton().getOnline(username);
+            }
 
-        /**
-         * Writes the result.
-         */
-        client.encode(new LoginPayloadResponse(result, client.getPlayer().getRights(), false));
+            /**
+             * This account is already logged in.
+             */
+            if (!reconnecting || existing == null || !password.equals(existing.getPassword())) {
+                reject(client, ACCOUNT_ACTIVE_RESPONSE_OPCODE);
+                return;
+            }
+            if (!existing.isSuspended()) {
+                if (!existing.isConnected() || existing.isLoggingOut()) {
+                    reject(client, ACCOUNT_ACTIVE_RESPONSE_OPCODE);
+                    return;
+                }
+
+                /**
+                 * The previous connection was most likely lost without the
+                 * server noticing, so it is closed in favour of this one. The
+                 * user is suspended once this login is admitted.
+                 */
+                existing.getClient().disconnect();
+            }
 
-        /**
-         * A successful login was made.
-         */
-        if (result == SUCCESSFUL_RESPONSE_OPCODE) {
+            /**
+             * Resumes the session of a user whose connection was recently
+             * lost.
+             */
+            complete(client, SUCCESSFUL_RESPONSE_OPCODE, username, password, encryption, decryption, existing, true);
+        } catch (BufferUnderflowException exception) {
+            reject(client, MALFORMED);
+        }
+    }
+
+    private void reject(Client client, int result) {
+        complete(client, result, null, null, null, null, null, false);
+    }
+
+    /**
+     * Hands the result of a login back to the connection's transport, which
+     * owns its codecs and ciphers.
+     *
+     * @param player The user, or null if the login failed.
+     * @param resumed If the user is a suspended one whose session is resumed.
+     */
+    private void complete(Client client, int result, String username, String password,
+            IsaacKeystream encryption, IsaacKeystream decryption, Player player, boolean resumed) {
+        client.getTransport().execute(() -> {
+            if (client.disconnected()) {
+
+                /**
+                 * The connection was lost while this login was in progress.
+                 */
+                if (result == SUCCESSFUL_RESPONSE_OPCODE && !resumed)
+                    World.singleton().unregister(username, player);
+                return;
+            }
+            if (result == MALFORMED) {
+                client.disconnect();
+                return;
+            }
+
+            if (result == SUCCESSFUL_RESPONSE_OPCODE && !World.singleton().getLogins().reserve()) {
+
+                /**
+                 * Too many users are already waiting to enter the world.
+                 */
+                if (!resumed)
+                    World.singleton().unregister(username, player);
+                client.encode(new LoginPayloadResponse(WAIT_THEN_TRY_AGAIN_RESPONSE_OPCODE, 0, false));
+                client.disconnect();
+                return;
+            }
 
             /**
-             * Sets the details.
+             * Writes the result.
              */
-            client.getPlayer().setUsername(username);
-            client.getPlayer().setPassword(password);
+            client.encode(new LoginPayloadResponse(result, player == null ? 0 : player.getRights(), false));
+            if (result != SUCCESSFUL_RESPONSE_OPCODE) {
+                client.disconnect();
+                return;
+            }
 
             /**
-             * Queues this login. Will be processed on the next iteration of the
-             * world's thread.
+             * Sets the details of a new user, then attaches this connection to
+             * the user.
              */
-            World.singleton().getLogins().add(new LoginRequest(client.getPlayer()));
+            if (!resumed) {
+                player.setUsername(username);
+                player.setPassword(password);
+            }
+            client.setPlayer(player);
+            client.setDecryption(decryption);
+            client.setEncryption(encryption);
 
             /**
              * Readies the next set of encoders and decoders for game packets.
              */
             client.setCodecs(new GameMessageEncoder(), new GameMessageDecoder());
-        }
 
-        return result == SUCCESSFUL_RESPONSE_OPCODE;
+            /**
+             * Queues this login. Will be processed once the world's thread
+             * admits it.
+             */
+            World.singleton().getLogins().add(new LoginRequest(player, client, resumed));
+            client.flush();
+        });
     }
 }
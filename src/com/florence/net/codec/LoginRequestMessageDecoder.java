@@ -31,14 +31,16 @@ public class LoginRequestMessageDecoder implements MessageDecoder {
     public static final int EXISTING_CONNECTION = 0x12;
 
     @Override
-    public boolean decode(Client client) {
+    public DecodeState decode(Client client) {
+        if (client.getBuffer().remaining() < Byte.BYTES + Byte.BYTES)
+            return DecodeState.UNDERFLOW;
         int connectionType = client.getBuffer().get() & 0xFF;
-        if (connectionType == FRESH_CONNECTION || connectionType == EXISTING_CONNECTION) {
-            int length = client.getBuffer().get() & 0xFF;
+        if (connectionType != FRESH_CONNECTION && connectionType != EXISTING_CONNECTION)
+            return DecodeState.REJECTED;
+        int length = client.getBuffer().get() & 0xFF;
 
-            client.setCodecs(new LoginPayloadMessageEncoder(),
-                    new LoginPayloadMessageDecoder(length));
-        }
-        return connectionType == FRESH_CONNECTION || connectionType == EXISTING_CONNECTION;
+        client.setCodecs(new LoginPayloadMessageEncoder(),
+                new LoginPayloadMessageDecoder(length, connectionType == EXISTING_CONNECTION));
+        return DecodeState.DECODED;
     }
 }
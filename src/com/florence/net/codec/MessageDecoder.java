@@ -20,5 +20,22 @@ import com.florence.net.Client;
 
 public interface MessageDecoder {
 
-    boolean decode(Client client);
+    public enum DecodeState {
+
+        /**
+         * A message was decoded and its bytes were consumed.
+         */
+        DECODED,
+        /**
+         * There is an insufficient amount of data to decode a message. Any
+         * unconsumed bytes are kept until more data arrives.
+         */
+        UNDERFLOW,
+        /**
+         * The data is invalid and the connection should be closed.
+         */
+        REJECTED
+    }
+
+    DecodeState decode(Client client);
 }
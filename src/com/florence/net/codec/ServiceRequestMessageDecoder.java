@@ -17,6 +17,8 @@
 package com.florence.net.codec;
 
 import com.florence.net.Client;
+import com.florence.net.ondemand.OnDemandServer;
+import java.io.IOException;
 
 public class ServiceRequestMessageDecoder implements MessageDecoder {
 
@@ -31,11 +33,37 @@ public class ServiceRequestMessageDecoder implements MessageDecoder {
     public static final int UPDATE_REQUEST = 0xF;
 
     @Override
-    public boolean decode(Client client) {
+    public DecodeState decode(Client client) {
         int request = client.getBuffer().get() & 0xFF;
-        if (request == LOGIN_REQUEST)
+        if (request == LOGIN_REQUEST) {
             client.setCodecs(new LoginHandshakeMessageEncoder(),
                     new LoginHandshakeMessageDecoder());
-        return request == LOGIN_REQUEST;
+            return DecodeState.DECODED;
+        }
+
+        /**
+         * Hands the connection over to the on-demand server, which serves it
+         * on a reactor of its own. The client sends nothing more until it has
+         * been greeted.
+         */
+        if (request == UPDATE_REQUEST && OnDemandServer.singleton().isRunning()) {
+            client.detach();
+            if (!OnDemandServer.singleton().handOff(client.getSocket())) {
+
+                /**
+                 * The on-demand server stopped in the meantime. The detached
+                 * connection is no longer closed by its transport, so it is
+                 * closed here.
+                 */
+                try {
+                    client.getSocket().close();
+                } catch (IOException exception) {
+                    exception.printStackTrace(System.out);
+                }
+                return DecodeState.REJECTED;
+            }
+            return DecodeState.DECODED;
+        }
+        return DecodeState.REJECTED;
     }
 }
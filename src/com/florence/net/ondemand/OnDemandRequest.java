@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2019 Dylan Vicchiarelli
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.florence.net.ondemand;
+
+/**
+ * A request for a single file, along with the progress of its transfer.
+ */
+public class OnDemandRequest {
+
+    /**
+     * The priorities a request may be sent with, in the order the client
+     * numbers them.
+     */
+    public enum Priority {
+
+        /**
+         * Files fetched in the background while the user plays.
+         */
+        PREFETCH,
+        /**
+         * Files fetched before the user has logged in.
+         */
+        PRELOAD,
+        /**
+         * Files the client is waiting on right now.
+         */
+        URGENT
+    }
+
+    private final int type;
+    private final int file;
+    private final Priority priority;
+
+    /**
+     * The position in the store at which this transfer begins.
+     */
+    private final long start;
+
+    /**
+     * The position in the store of the next byte to transfer.
+     */
+    private long position;
+
+    /**
+     * The position in the store at which this transfer ends.
+     */
+    private final long end;
+
+    public OnDemandRequest(int type, int file, Priority priority, long position, int length) {
+        this.type = type;
+        this.file = file;
+        this.priority = priority;
+        this.start = position;
+        this.position = position;
+        this.end = position + length;
+    }
+
+    /**
+     * Determines if the next byte to transfer begins a chunk, in which case
+     * this transfer may be interrupted without corrupting the stream.
+     */
+    public boolean isBetweenChunks() {
+        return (position - start) % (OnDemandStore.HEADER_LENGTH + OnDemandStore.CHUNK_LENGTH) == 0;
+    }
+
+    /**
+     * Shortens a transfer so that it ends between chunks, unless it would
+     * not transfer anything at all.
+     *
+     * @param count The amount of bytes to transfer.
+     * @return The amount of bytes to transfer.
+     */
+    public long align(long count) {
+        if (count >= remaining())
+            return count;
+        final long excess = (position + count - start) % (OnDemandStore.HEADER_LENGTH + OnDemandStore.CHUNK_LENGTH);
+        return count > excess ? count - excess : count;
+    }
+
+    public void advance(long amount) {
+        position += amount;
+    }
+
+    public long remaining() {
+        return end - position;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public int getFile() {
+        return file;
+    }
+
+    public Priority getPriority() {
+        return priority;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+}
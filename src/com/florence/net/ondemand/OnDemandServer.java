@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2019 Dylan Vicchiarelli
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.florence.net.ondemand;
+
+import com.florence.net.ConnectionLimiter;
+import com.florence.net.TimingWheel;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Serves the files the client fetches on demand, on a reactor of its own so
+ * that large transfers never compete with the game's connections. Accepts
+ * connections made directly to its own address, as well as connections that
+ * the game's reactors hand over after reading an update request.
+ */
+public class OnDemandServer implements Runnable {
+
+    /**
+     * The default maximum amount of bytes per second transferred to each
+     * connection.
+     */
+    public static final int DEFAULT_BANDWIDTH = 512 * 1024;
+
+    /**
+     * The time in milliseconds that a connection may go without sending a
+     * request or accepting any bytes before it is closed.
+     */
+    public static final int IDLE_TIMEOUT = 60000;
+
+    private static OnDemandServer singleton;
+
+    public static OnDemandServer singleton() {
+        if (singleton == null)
+            singleton = new OnDemandServer(DEFAULT_BANDWIDTH, new ConnectionLimiter());
+        return singleton;
+    }
+
+    private final int bandwidth;
+    private final ConnectionLimiter limiter;
+
+    /**
+     * Connections handed over by the game's reactors, waiting to be
+     * registered on this server's thread.
+     */
+    private final ConcurrentLinkedQueue<SocketChannel> handoffs = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Connections waiting for their bandwidth allowance to refill.
+     */
+    private final ArrayList<OnDemandSession> throttled = new ArrayList<>();
+    private final TimingWheel<OnDemandSession> timeouts = new TimingWheel<>();
+
+    private Selector selector;
+    private ServerSocketChannel server;
+    private OnDemandStore store;
+    private volatile boolean running;
+
+    public OnDemandServer(int bandwidth, ConnectionLimiter limiter) {
+        this.bandwidth = bandwidth;
+        this.limiter = limiter;
+    }
+
+    /**
+     * Frames the cache and binds this server. Without a cache there is
+     * nothing to serve, in which case this server is left unbound.
+     *
+     * @param address The address to bind to.
+     * @return If this server is ready to run.
+     */
+    public boolean initialize(InetSocketAddress address) throws IOException {
+        final File directory = new File(OnDemandStore.CACHE_DIRECTORY);
+        if (!new File(directory, OnDemandStore.DATA_FILE).exists()) {
+            System.out.println("No cache found in " + directory + ", files will not be served on demand.");
+            return false;
+        }
+        store = OnDemandStore.open(directory);
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        server.bind(address);
+        running = true;
+        return true;
+    }
+
+    /**
+     * Takes over a connection from the game's reactors. Its update request
+     * has already been read.
+     *
+     * @param socket The connection.
+     * @return If this server accepted the connection.
+     */
+    public boolean handOff(SocketChannel socket) {
+        if (!running)
+            return false;
+        handoffs.add(socket);
+        selector.wakeup();
+        return true;
+    }
+
+    @Override
+    public void run() {
+        while (selector.isOpen() && !Thread.currentThread().isInterrupted()) {
+            try {
+                selector.select(timeout());
+            } catch (IOException exception) {
+                exception.printStackTrace(System.out);
+                continue;
+            }
+            SocketChannel socket;
+            while ((socket = handoffs.poll()) != null) {
+                register(socket, false);
+            }
+            final long now = System.currentTimeMillis();
+            throttled.removeIf(session -> session.unthrottle(now));
+            Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+            while (iterator.hasNext()) {
+                SelectionKey token = iterator.next();
+                iterator.remove();
+                if (!token.isValid())
+                    continue;
+                if (token.isAcceptable()) {
+                    accept();
+                    continue;
+                }
+                final OnDemandSession session = (OnDemandSession) token.attachment();
+                try {
+                    if (token.isReadable()) {
+                        if (!session.read(store)) {
+                            close(session);
+                            continue;
+                        }
+                    }
+                    if (token.isValid() && token.isWritable() && session.write(store) != 0)
+                        throttled.add(session);
+                } catch (IOException exception) {
+                    close(session);
+                }
+            }
+            timeouts.advance(session -> {
+                final long remaining = session.getIdleTimeRemaining(System.currentTimeMillis());
+                if (remaining > 0)
+                    timeouts.schedule(session.getTimeout(), remaining);
+                else
+                    close(session);
+            });
+        }
+    }
+
+    /**
+     * Returns the time to block for, bounded by the next tick of the timing
+     * wheel and the earliest throttle to expire. Zero blocks until woken.
+     */
+    private long timeout() {
+        long timeout = timeouts.untilNextTick();
+        final long now = System.currentTimeMillis();
+        for (OnDemandSession session : throttled) {
+            final long remaining = Math.max(1, session.getThrottledUntil() - now);
+            timeout = timeout == 0 ? remaining : Math.min(timeout, remaining);
+        }
+        return timeout;
+    }
+
+    private void accept() {
+        try {
+            SocketChannel socket;
+            while ((socket = server.accept()) != null) {
+                register(socket, true);
+            }
+        } catch (IOException exception) {
+            exception.printStackTrace(System.out);
+        }
+    }
+
+    private void register(SocketChannel socket, boolean awaitingService) {
+        final InetAddress address = socket.socket().getInetAddress();
+        if (!limiter.acquire(address)) {
+            try {
+                socket.close();
+            } catch (IOException exception) {
+                exception.printStackTrace(System.out);
+            }
+            return;
+        }
+        try {
+            socket.configureBlocking(false);
+            final SelectionKey token = socket.register(selector, SelectionKey.OP_READ);
+            final OnDemandSession session = new OnDemandSession(socket, token, bandwidth, awaitingService);
+            session.setTimeout(timeouts.create(session));
+            timeouts.schedule(session.getTimeout(), IDLE_TIMEOUT);
+            token.attach(session);
+        } catch (IOException exception) {
+            exception.printStackTrace(System.out);
+            limiter.abandon(socket, address);
+        }
+    }
+
+    private void close(OnDemandSession session) {
+        if (!session.getToken().isValid())
+            return;
+        session.getToken().cancel();
+        throttled.remove(session);
+        timeouts.cancel(session.getTimeout());
+        limiter.release(session.getSocket().socket().getInetAddress());
+        try {
+            session.getSocket().close();
+        } catch (IOException exception) {
+            exception.printStackTrace(System.out);
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public OnDemandStore getStore() {
+        return store;
+    }
+
+    public int getBandwidth() {
+        return bandwidth;
+    }
+
+    public ConnectionLimiter getLimiter() {
+        return limiter;
+    }
+}
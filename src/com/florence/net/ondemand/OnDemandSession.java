@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2019 Dylan Vicchiarelli
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.florence.net.ondemand;
+
+import com.florence.net.TimingWheel;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+
+/**
+ * A connection to the on-demand server. Requests are queued by priority and
+ * transferred a slice at a time, so that an urgent request never waits
+ * behind more than a slice of a prefetch, and no faster than the
+ * connection's bandwidth allows.
+ */
+public class OnDemandSession {
+
+    /**
+     * The service request that precedes the exchange when a connection is
+     * made directly to the on-demand server.
+     */
+    public static final int UPDATE_REQUEST = 0xF;
+
+    /**
+     * The length of each request: type, file and priority.
+     */
+    public static final int REQUEST_LENGTH = 4;
+
+    /**
+     * The priority the client sends with empty requests that only serve to
+     * keep the connection alive.
+     */
+    public static final int KEEP_ALIVE_PRIORITY = 10;
+
+    /**
+     * The maximum amount of requests that may be queued at once.
+     */
+    public static final int MAXIMUM_QUEUED_REQUESTS = 1024;
+
+    /**
+     * The maximum amount of bytes transferred at once, before the queues are
+     * consulted again. A whole number of chunks.
+     */
+    public static final int SLICE_LENGTH = 16 * (OnDemandStore.HEADER_LENGTH + OnDemandStore.CHUNK_LENGTH);
+
+    /**
+     * The length of the greeting, which the client reads and discards.
+     */
+    private static final int GREETING_LENGTH = 8;
+
+    private final SocketChannel socket;
+    private final SelectionKey token;
+
+    /**
+     * The pending requests, by priority.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ArrayDeque<OnDemandRequest>[] queues = new ArrayDeque[OnDemandRequest.Priority.values().length];
+    private final ByteBuffer inbound = ByteBuffer.allocate(REQUEST_LENGTH * 64);
+    private ByteBuffer greeting;
+
+    /**
+     * Denotes if the service request has yet to be read.
+     */
+    private boolean awaitingService;
+    private OnDemandRequest current;
+    private int queued;
+
+    /**
+     * The maximum amount of bytes per second that may be transferred, and
+     * the amount that may currently be transferred.
+     */
+    private final int bandwidth;
+    private long allowance;
+    private long refilled;
+
+    /**
+     * The time until which this connection may not transfer, or zero.
+     */
+    private long throttledUntil;
+
+    /**
+     * The timeout that reaps this connection once it goes silent.
+     */
+    private TimingWheel.Timeout<OnDemandSession> timeout;
+
+    /**
+     * The time at which a request was last read or bytes were last
+     * transferred to this connection.
+     */
+    private long lastActive = System.currentTimeMillis();
+
+    public OnDemandSession(SocketChannel socket, SelectionKey token, int bandwidth, boolean awaitingService) {
+        this.socket = socket;
+        this.token = token;
+        this.bandwidth = bandwidth;
+        this.allowance = bandwidth;
+        this.refilled = System.currentTimeMillis();
+        this.awaitingService = awaitingService;
+        for (int index = 0; index < queues.length; index++) {
+            queues[index] = new ArrayDeque<>();
+        }
+        if (!awaitingService)
+            greet();
+    }
+
+    private void greet() {
+        greeting = ByteBuffer.allocate(GREETING_LENGTH);
+        token.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Reads and queues requests.
+     *
+     * @return If the connection is still valid.
+     * @throws IOException If the connection could not be read.
+     */
+    public boolean read(OnDemandStore store) throws IOException {
+        final int read = socket.read(inbound);
+        if (read < 0)
+            return false;
+        if (read > 0)
+            lastActive = System.currentTimeMillis();
+        inbound.flip();
+        try {
+            if (awaitingService && inbound.hasRemaining()) {
+                if ((inbound.get() & 0xFF) != UPDATE_REQUEST)
+                    return false;
+                awaitingService = false;
+                greet();
+            }
+            while (inbound.remaining() >= REQUEST_LENGTH) {
+                final int type = inbound.get() & 0xFF;
+                final int file = inbound.getShort() & 0xFFFF;
+                final int priority = inbound.get() & 0xFF;
+                if (priority == KEEP_ALIVE_PRIORITY)
+                    continue;
+                if (priority >= queues.length || !store.contains(type, file))
+                    return false;
+                if (++queued > MAXIMUM_QUEUED_REQUESTS)
+                    return false;
+                queues[priority].add(new OnDemandRequest(type, file, OnDemandRequest.Priority.values()[priority],
+                        store.getPosition(type, file), store.getLength(type, file)));
+            }
+        } finally {
+            inbound.compact();
+        }
+        if (queued > 0 && throttledUntil == 0)
+            token.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        return true;
+    }
+
+    /**
+     * Transfers queued files until the socket's send buffer is full, the
+     * queues are empty or this connection's allowance is spent.
+     *
+     * @return The time until which this connection is throttled, or zero.
+     * @throws IOException If the connection could not be written to.
+     */
+    public long write(OnDemandStore store) throws IOException {
+        final long now = System.currentTimeMillis();
+        allowance = Math.min(bandwidth, allowance + (now - refilled) * bandwidth / 1000);
+        refilled = now;
+        throttledUntil = 0;
+        if (greeting != null) {
+            if (socket.write(greeting) > 0)
+                lastActive = now;
+            if (greeting.hasRemaining())
+                return 0;
+            greeting = null;
+        }
+        while (allowance > 0) {
+            next();
+            if (current == null) {
+                token.interestOps(SelectionKey.OP_READ);
+                return 0;
+            }
+            final long count = current.align(Math.min(Math.min(current.remaining(), allowance), SLICE_LENGTH));
+            final long transferred = store.getChannel().transferTo(current.getPosition(), count, socket);
+            current.advance(transferred);
+            if (transferred > 0)
+                lastActive = now;
+            allowance -= transferred;
+            if (current.remaining() == 0) {
+                current = null;
+                queued--;
+            }
+
+            /**
+             * The socket's send buffer is full.
+             */
+            if (transferred < count)
+                return 0;
+        }
+
+        /**
+         * Waits until at least a whole chunk may be transferred.
+         */
+        token.interestOps(SelectionKey.OP_READ);
+        throttledUntil = now + Math.max(1, (OnDemandStore.HEADER_LENGTH + OnDemandStore.CHUNK_LENGTH - allowance) * 1000 / bandwidth);
+        return throttledUntil;
+    }
+
+    /**
+     * Selects the request to transfer next. A transfer in progress is put
+     * back in favour of a request of higher priority, but only between
+     * chunks.
+     */
+    private void next() {
+        for (int priority = queues.length - 1; priority >= 0; priority--) {
+            if (current != null && current.getPriority().ordinal() >= priority)
+                return;
+            if (queues[priority].isEmpty())
+                continue;
+            if (current != null) {
+                if (!current.isBetweenChunks())
+                    return;
+                queues[current.getPriority().ordinal()].addFirst(current);
+            }
+            current = queues[priority].poll();
+            return;
+        }
+    }
+
+    /**
+     * Lifts this connection's throttle once it has expired.
+     *
+     * @return If the throttle was lifted.
+     */
+    public boolean unthrottle(long now) {
+        if (throttledUntil == 0 || now < throttledUntil)
+            return false;
+        throttledUntil = 0;
+        if (token.isValid())
+            token.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        return true;
+    }
+
+    /**
+     * Returns the time left until this connection is considered stalled,
+     * neither having sent a request nor accepted any bytes since.
+     *
+     * @return The time in milliseconds, zero or less if it has passed.
+     */
+    public long getIdleTimeRemaining(long now) {
+        return lastActive + OnDemandServer.IDLE_TIMEOUT - now;
+    }
+
+    public SocketChannel getSocket() {
+        return socket;
+    }
+
+    public SelectionKey getToken() {
+        return token;
+    }
+
+    public long getThrottledUntil() {
+        return throttledUntil;
+    }
+
+    public TimingWheel.Timeout<OnDemandSession> getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(TimingWheel.Timeout<OnDemandSession> timeout) {
+        this.timeout = timeout;
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2019 Dylan Vicchiarelli
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.florence.net.ondemand;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The files served on demand, read once from the client's cache and written
+ * to a single store with every file already split into the chunks that are
+ * sent to the client, headers included. Requests are then served straight
+ * from the page cache with zero-copy transfers, never touching the heap.
+ */
+public class OnDemandStore {
+
+    /**
+     * The directory holding the cache.
+     */
+    public static final String CACHE_DIRECTORY = "./data/cache/";
+
+    public static final String DATA_FILE = "main_file_cache.dat";
+    public static final String INDEX_FILE_PREFIX = "main_file_cache.idx";
+
+    /**
+     * The store that framed files are written to, rebuilt on each start.
+     */
+    public static final String FRAMED_FILE = "ondemand.dat";
+
+    /**
+     * The amount of file types that may be requested: models, animations,
+     * music and maps. Each is held by the index following its type.
+     */
+    public static final int TYPES = 4;
+
+    /**
+     * The maximum length of the data carried by a single chunk.
+     */
+    public static final int CHUNK_LENGTH = 500;
+
+    /**
+     * The length of each chunk's header: type, file, file length and chunk
+     * index.
+     */
+    public static final int HEADER_LENGTH = 6;
+
+    private static final int SECTOR_LENGTH = 520;
+    private static final int SECTOR_HEADER_LENGTH = 8;
+    private static final int INDEX_ENTRY_LENGTH = 6;
+
+    /**
+     * The position and length of each framed file in the store, by type.
+     */
+    private final long[][] positions;
+    private final int[][] lengths;
+    private final FileChannel channel;
+
+    private OnDemandStore(long[][] positions, int[][] lengths, FileChannel channel) {
+        this.positions = positions;
+        this.lengths = lengths;
+        this.channel = channel;
+    }
+
+    /**
+     * Frames every file in a cache and opens the resulting store.
+     *
+     * @param directory The directory holding the cache.
+     * @return The store.
+     * @throws IOException If the cache could not be read or the store could
+     * not be written.
+     */
+    public static OnDemandStore open(File directory) throws IOException {
+        final long[][] positions = new long[TYPES][];
+        final int[][] lengths = new int[TYPES][];
+        final File framed = new File(directory, FRAMED_FILE);
+        final File temporary = new File(directory, FRAMED_FILE + ".tmp");
+        try (RandomAccessFile data = new RandomAccessFile(new File(directory, DATA_FILE), "r");
+                FileChannel output = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            /**
+             * The cache is mapped rather than read, as every sector is
+             * visited exactly once.
+             */
+            final MappedByteBuffer sectors = data.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, data.length());
+            final ByteBuffer file = ByteBuffer.allocate(0xFFFF);
+            final ByteBuffer frame = ByteBuffer.allocate(HEADER_LENGTH + CHUNK_LENGTH);
+            long position = 0;
+            for (int type = 0; type < TYPES; type++) {
+                try (RandomAccessFile index = new RandomAccessFile(new File(directory, INDEX_FILE_PREFIX + (type + 1)), "r")) {
+                    final MappedByteBuffer entries = index.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, index.length());
+                    final int count = (int) (index.length() / INDEX_ENTRY_LENGTH);
+                    positions[type] = new long[count];
+                    lengths[type] = new int[count];
+                    for (int id = 0; id < count; id++) {
+                        file.clear();
+                        if (!read(sectors, entries, type, id, file))
+                            file.clear();
+                        file.flip();
+
+                        /**
+                         * Missing files are framed as a single empty chunk,
+                         * which the client takes as a rejection.
+                         */
+                        final int length = file.remaining();
+                        int chunk = 0;
+                        positions[type][id] = position;
+                        do {
+                            final int amount = Math.min(CHUNK_LENGTH, file.remaining());
+                            frame.clear();
+                            frame.put((byte) type).putShort((short) id).putShort((short) length).put((byte) chunk++);
+                            frame.put(file.array(), file.position(), amount);
+                            file.position(file.position() + amount);
+                            frame.flip();
+                            while (frame.hasRemaining()) {
+                                position += output.write(frame);
+                            }
+                        } while (file.hasRemaining());
+                        lengths[type][id] = (int) (position - positions[type][id]);
+                    }
+                }
+            }
+        }
+        Files.move(temporary.toPath(), framed.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return new OnDemandStore(positions, lengths, FileChannel.open(framed.toPath(), StandardOpenOption.READ));
+    }
+
+    /**
+     * Reads a file from the cache by following its chain of sectors.
+     *
+     * @return If the file exists and its chain is intact.
+     */
+    private static boolean read(ByteBuffer sectors, ByteBuffer entries, int type, int id, ByteBuffer file) {
+        final int entry = id * INDEX_ENTRY_LENGTH;
+        final int length = medium(entries, entry);
+        int sector = medium(entries, entry + 3);
+        if (length <= 0 || length > file.capacity())
+            return false;
+        int chunk = 0;
+        while (file.position() < length) {
+            final long offset = (long) sector * SECTOR_LENGTH;
+            if (sector <= 0 || offset + SECTOR_LENGTH > sectors.limit())
+                return false;
+            final int base = (int) offset;
+            if ((sectors.getShort(base) & 0xFFFF) != id || (sectors.getShort(base + 2) & 0xFFFF) != chunk
+                    || (sectors.get(base + 7) & 0xFF) != type + 1)
+                return false;
+            final int amount = Math.min(SECTOR_LENGTH - SECTOR_HEADER_LENGTH, length - file.position());
+            for (int index = 0; index < amount; index++) {
+                file.put(sectors.get(base + SECTOR_HEADER_LENGTH + index));
+            }
+            sector = medium(sectors, base + 4);
+            chunk++;
+        }
+        return true;
+    }
+
+    private static int medium(ByteBuffer buffer, int index) {
+        return ((buffer.get(index) & 0xFF) << 16) | ((buffer.get(index + 1) & 0xFF) << 8) | (buffer.get(index + 2) & 0xFF);
+    }
+
+    /**
+     * Determines if a file exists in this store.
+     */
+    public boolean contains(int type, int file) {
+        return type >= 0 && type < TYPES && file >= 0 && file < positions[type].length;
+    }
+
+    public long getPosition(int type, int file) {
+        return positions[type][file];
+    }
+
+    /**
+     * Returns the length of a framed file, headers included.
+     */
+    public int getLength(int type, int file) {
+        return lengths[type][file];
+    }
+
+    public FileChannel getChannel() {
+        return channel;
+    }
+}
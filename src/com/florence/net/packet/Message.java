@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2019 Dylan Vicchiarelli
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.florence.net.packet;
+
+/**
+ * An inbound packet that has been parsed and validated by the network's
+ * threads. Messages are immutable so that they can be handed to the world's
+ * thread without synchronization, leaving it only to apply them.
+ */
+public abstract class Message {
+
+    private final int opcode;
+
+    protected Message(int opcode) {
+        this.opcode = opcode;
+    }
+
+    public int getOpcode() {
+        return opcode;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2019 Dylan Vicchiarelli
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.florence.net.packet;
+
+import com.florence.model.player.Player;
+import java.util.Arrays;
+
+/**
+ * Limits the amount of inbound packets handled for each user per cycle.
+ * Packets beyond the budget are carried over to the next cycle, and a user
+ * whose packets are carried over for too many consecutive cycles is treated
+ * as flooding.
+ */
+public class PacketBudget {
+
+    /**
+     * The amount of possible opcodes.
+     */
+    public static final int OPCODES = 256;
+
+    /**
+     * The default amount of packets handled for each user per cycle.
+     */
+    public static final int DEFAULT_CYCLE_BUDGET = 25;
+
+    /**
+     * The default amount of consecutive cycles that may end with packets
+     * carried over before a user is treated as flooding.
+     */
+    public static final int DEFAULT_FLOOD_THRESHOLD = 10;
+
+    /**
+     * The default amount of cycles that a flooding user's packets are
+     * discarded for when muted.
+     */
+    public static final int DEFAULT_MUTE_CYCLES = 50;
+
+    public enum FloodPolicy {
+
+        /**
+         * Flooding users are disconnected.
+         */
+        DISCONNECT,
+        /**
+         * Flooding users have their packets discarded for a period of time.
+         */
+        MUTE
+    }
+
+    /**
+     * The amount of packets of each opcode handled for each user per cycle.
+     */
+    private final int[] limits = new int[OPCODES];
+    private int budget = DEFAULT_CYCLE_BUDGET;
+    private int threshold = DEFAULT_FLOOD_THRESHOLD;
+    private int muteCycles = DEFAULT_MUTE_CYCLES;
+    private FloodPolicy policy = FloodPolicy.DISCONNECT;
+
+    public PacketBudget() {
+        Arrays.fill(limits, DEFAULT_CYCLE_BUDGET);
+        limits[PacketDecoderConstants.ACTION_BUTTON_PACKET_OPCODE] = 5;
+        limits[PacketDecoderConstants.COMMAND_PACKET_OPCODE] = 3;
+        limits[PacketDecoderConstants.CHAT_PACKET_OPCODE] = 2;
+        limits[PacketDecoderConstants.MAP_WALK_PACKET_OPCODE] = 2;
+        limits[PacketDecoderConstants.WALK_TO_PACKET_OPCODE] = 2;
+        limits[PacketDecoderConstants.STANDARD_WALK_PACKET_OPCODE] = 2;
+    }
+
+    /**
+     * Handles as many of a user's pending packets as their budget allows.
+     * Packets are handled in order, so the first packet beyond the budget
+     * carries itself and every packet after it over to the next cycle.
+     *
+     * @param player The user.
+     * @param table The table that handles each packet.
+     */
+    public void drain(Player player, PacketDecoderTable table) {
+        final PacketStatistics statistics = player.getPacketStatistics();
+        if (statistics.mute()) {
+            player.getPackets().drain(message -> statistics.drop());
+            return;
+        }
+        Message message;
+        boolean carried = false;
+        while ((message = player.getPackets().peek()) != null) {
+            final int opcode = message.getOpcode();
+            if (statistics.getHandledThisCycle() >= budget || statistics.used(opcode) >= limits[opcode]) {
+                carried = true;
+                break;
+            }
+            player.getPackets().poll();
+            statistics.use(opcode);
+            table.decode(player, message);
+        }
+        if (statistics.finish(carried) >= threshold)
+            flood(player, statistics);
+    }
+
+    private void flood(Player player, PacketStatistics statistics) {
+        statistics.flag(muteCycles);
+        switch (policy) {
+
+            case DISCONNECT:
+                System.out.println(player.getUsername() + " has been disconnected for flooding. " + statistics + ".");
+                player.logout();
+                break;
+
+            case MUTE:
+                System.out.println(player.getUsername() + " has been muted for flooding. " + statistics + ".");
+                break;
+        }
+    }
+
+    public int getLimit(int opcode) {
+        return limits[opcode];
+    }
+
+    public void setLimit(int opcode, int limit) {
+        limits[opcode] = limit;
+    }
+
+    public int getBudget() {
+        return budget;
+    }
+
+    public void setBudget(int budget) {
+        this.budget = budget;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(int threshold) {
+        this.threshold = threshold;
+    }
+
+    public int getMuteCycles() {
+        return muteCycles;
+    }
+
+    public void setMuteCycles(int muteCycles) {
+        this.muteCycles = muteCycles;
+    }
+
+    public FloodPolicy getPolicy() {
+        return policy;
+    }
+
+    public void setPolicy(FloodPolicy policy) {
+        this.policy = policy;
+    }
+}
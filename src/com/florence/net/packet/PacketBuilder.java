@@ -19,16 +19,55 @@ package com.florence.net.packet;
 import com.florence.model.player.Player;
 import com.florence.net.OutByteBuffer;
 
+/**
+ * Writes the payload of a game packet. A packet is encoded as soon as it is
+ * sent, so an instance may be sent again once that returns, and builders that
+ * hold no state of their own may be shared.
+ */
 public abstract class PacketBuilder {
 
     private int opcode;
     private PacketHeader header;
+    private PacketPriority priority;
 
-    public abstract OutByteBuffer build(Player player);
+    /**
+     * Writes this packet's payload in place, after its opcode and length.
+     *
+     * @param player The user this packet is sent to, or null when encoding a
+     * template.
+     * @param buffer The buffer that the frame is written into.
+     */
+    public abstract void build(Player player, OutByteBuffer buffer);
 
     public PacketBuilder(int opcode, PacketHeader header) {
+        this(opcode, header, PacketPriority.INTERFACE);
+    }
+
+    public PacketBuilder(int opcode, PacketHeader header, PacketPriority priority) {
         this.opcode = opcode;
         this.header = header;
+        this.priority = priority;
+    }
+
+    /**
+     * Returns a key identifying the client state this packet sets in full,
+     * such that a waiting packet with the same key may be replaced by this
+     * one. Packets that do not set state in full return null.
+     *
+     * @return The key, or null.
+     */
+    public Object getCoalescingKey() {
+        return null;
+    }
+
+    /**
+     * Creates a coalescing key for one piece of state set by this packet.
+     *
+     * @param index The index of the state, such as an interface or skill.
+     * @return The key.
+     */
+    protected Long key(int index) {
+        return ((long) opcode << 32) | (index & 0xFFFFFFFFL);
     }
 
     public int getOpcode() {
@@ -46,4 +85,12 @@ public abstract class PacketBuilder {
     public void setHeader(PacketHeader header) {
         this.header = header;
     }
+
+    public PacketPriority getPriority() {
+        return priority;
+    }
+
+    public void setPriority(PacketPriority priority) {
+        this.priority = priority;
+    }
 }
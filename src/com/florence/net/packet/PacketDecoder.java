@@ -18,7 +18,30 @@ package com.florence.net.packet;
 
 import com.florence.model.player.Player;
 
-public interface PacketDecoder {
+/**
+ * Handles an inbound packet in two stages. The packet is first parsed into a
+ * message on the network's threads, after which the world's thread applies
+ * that message.
+ *
+ * @param <M> The type of message.
+ */
+public interface PacketDecoder<M extends Message> {
+
+    /**
+     * Reads and validates a packet's payload. Called by the network's threads,
+     * so this must not access the world.
+     *
+     * @param packet The packet.
+     * @return The message, or null if the packet is invalid and should be
+     * discarded.
+     */
+    M parse(Packet packet);
 
-    void decode(Packet packet, Player player);
+    /**
+     * Applies a message. Called by the world's thread.
+     *
+     * @param message The message.
+     * @param player The user that sent the message.
+     */
+    void decode(M message, Player player);
 }
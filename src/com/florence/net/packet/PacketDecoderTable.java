@@ -26,12 +26,31 @@ import com.florence.net.packet.decoders.ItemInterfacePacketDecoder;
 import com.florence.net.packet.decoders.MovementPacketDecoder;
 import com.florence.net.packet.decoders.PressButtonPacketDecoder;
 import com.florence.net.packet.decoders.SwitchItemPacketDecoder;
+import com.florence.util.LatencyHistogram;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
 
 public class PacketDecoderTable {
 
-    private final HashMap<Integer, PacketDecoder> decoders = new HashMap<>();
+    /**
+     * The decoder of each opcode, or null if the opcode is unhandled.
+     */
+    private final PacketDecoder<?>[] decoders = new PacketDecoder<?>[PacketBudget.OPCODES];
+
+    /**
+     * The amount of packets received with each unhandled opcode. Incremented
+     * by the network's threads.
+     */
+    private final AtomicLongArray unknown = new AtomicLongArray(PacketBudget.OPCODES);
+
+    /**
+     * The time spent decoding each opcode on the world's thread. Only recorded
+     * while timing is enabled.
+     */
+    private final LatencyHistogram[] timings = new LatencyHistogram[PacketBudget.OPCODES];
+    private volatile boolean timing;
 
     public PacketDecoderTable() {
         register(PacketDecoderConstants.CHAT_PACKET_OPCODE, new ChatPacketDecoder());
@@ -53,25 +72,106 @@ public class PacketDecoderTable {
         register(PacketDecoderConstants.COMMAND_PACKET_OPCODE, new CommandPacketDecoder());
         register(PacketDecoderConstants.ACTION_BUTTON_PACKET_OPCODE, new PressButtonPacketDecoder());
         register(PacketDecoderConstants.ATTACK_MOB_PACKET_OPCODE, new AttackMobPacketDecoder());
-        System.out.println("Registered " + decoders.size() + " inbound frames.");
+        System.out.println("Registered " + Arrays.stream(decoders).filter(decoder -> decoder != null).count() + " inbound frames.");
     }
 
-    public final void register(int[] opcodes, PacketDecoder decoder) {
-        Arrays.stream(opcodes).forEach(opcode -> decoders.put(opcode, decoder));
+    public final void register(int[] opcodes, PacketDecoder<?> decoder) {
+        Arrays.stream(opcodes).forEach(opcode -> register(opcode, decoder));
     }
 
-    public final void register(int opcode, PacketDecoder decoder) {
-        decoders.put(opcode, decoder);
+    public final void register(int opcode, PacketDecoder<?> decoder) {
+        decoders[opcode] = decoder;
     }
 
-    public final void decode(Player player, Packet packet) {
-        if (packet == null || player == null)
+    /**
+     * Parses a packet into a message. Called by the network's threads, so the
+     * table must not be modified once the server has started.
+     *
+     * @param packet The packet, whose payload is only valid during this call.
+     * @return The message, or null if the packet is unhandled or invalid.
+     */
+    public final Message parse(Packet packet) {
+        final int opcode = packet.getOpcode();
+        if (opcode == 0)
+            return null;
+        final PacketDecoder<?> decoder = decoders[opcode];
+        if (decoder == null) {
+            unknown.incrementAndGet(opcode);
+            return null;
+        }
+        return decoder.parse(packet);
+    }
+
+    @SuppressWarnings("unchecked")
+    public final void decode(Player player, Message message) {
+        if (player == null || message == null)
+            return;
+        final int opcode = message.getOpcode();
+        final PacketDecoder<Message> decoder = (PacketDecoder<Message>) decoders[opcode];
+        if (decoder == null)
             return;
-        if (packet.getOpcode() == 0)
+        if (!timing) {
+            decoder.decode(message, player);
             return;
-        if (decoders.containsKey(packet.getOpcode()))
-            decoders.get(packet.getOpcode()).decode(packet, player);
-        if (player.getUsername().equalsIgnoreCase("mopar"))
-            System.out.println(player.getUsername() + " received inbound frame " + packet.getOpcode() + ".");
+        }
+        final long start = System.nanoTime();
+        try {
+            decoder.decode(message, player);
+        } finally {
+            LatencyHistogram histogram = timings[opcode];
+            if (histogram == null)
+                histogram = timings[opcode] = new LatencyHistogram();
+            histogram.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Prints the time spent decoding each opcode, the most costly first,
+     * followed by the unhandled opcodes that have been received.
+     */
+    public void report() {
+        System.out.println("Inbound frame timings:");
+        IntStream.range(0, PacketBudget.OPCODES)
+                .filter(opcode -> timings[opcode] != null)
+                .boxed()
+                .sorted(Comparator.comparingLong((Integer opcode) -> timings[opcode].getTotal()).reversed())
+                .forEach(opcode -> System.out.println("  " + opcode + " " + decoders[opcode].getClass().getSimpleName()
+                + " total=" + timings[opcode].getTotal() / 1000 + "us " + timings[opcode]));
+        IntStream.range(0, PacketBudget.OPCODES)
+                .filter(opcode -> unknown.get(opcode) > 0)
+                .forEach(opcode -> System.out.println("  Unhandled inbound frame " + opcode + " received "
+                + unknown.get(opcode) + " times."));
+    }
+
+    /**
+     * Enables or disables timing. Enabling timing discards any previously
+     * recorded timings.
+     *
+     * @param timing The flag.
+     */
+    public void setTiming(boolean timing) {
+        if (timing && !this.timing)
+            Arrays.fill(timings, null);
+        this.timing = timing;
+    }
+
+    public boolean isTiming() {
+        return timing;
+    }
+
+    public LatencyHistogram getTiming(int opcode) {
+        return timings[opcode];
+    }
+
+    public long getUnknown(int opcode) {
+        return unknown.get(opcode);
+    }
+
+    public long getUnknown() {
+        long total = 0;
+        for (int opcode = 0; opcode < PacketBudget.OPCODES; opcode++) {
+            total += unknown.get(opcode);
+        }
+        return total;
     }
 }
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2019 Dylan Vicchiarelli
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.florence.net.packet;
+
+/**
+ * The classes outbound packets are queued in. Higher classes are always
+ * written first; lower ones may be coalesced or deferred while a connection
+ * is congested.
+ */
+public enum PacketPriority {
+
+    /**
+     * Packets that keep the session itself in sync, such as logins, logouts
+     * and region changes. Never deferred.
+     */
+    CRITICAL,
+    /**
+     * The per-cycle entity updates. Never deferred.
+     */
+    UPDATE,
+    /**
+     * Interface and container state. Deferred under congestion.
+     */
+    INTERFACE,
+    /**
+     * Chat and other cosmetic packets. Deferred under congestion, and the
+     * oldest are discarded once too many are waiting.
+     */
+    COSMETIC;
+}
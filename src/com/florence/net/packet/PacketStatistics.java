@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2019 Dylan Vicchiarelli
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.florence.net.packet;
+
+/**
+ * Counts the inbound packets of a single user. Only ever accessed by the
+ * world's thread.
+ */
+public class PacketStatistics {
+
+    /**
+     * The amount of packets of each opcode handled during the current cycle.
+     */
+    private final int[] used = new int[PacketBudget.OPCODES];
+
+    /**
+     * The opcodes that have been handled during the current cycle, so that
+     * only those counts need to be reset.
+     */
+    private final int[] touched = new int[PacketBudget.OPCODES];
+    private int touches;
+
+    /**
+     * The amount of packets handled during the current cycle.
+     */
+    private int handledThisCycle;
+
+    /**
+     * The amount of consecutive cycles that ended with packets carried over.
+     */
+    private int saturatedCycles;
+
+    /**
+     * The amount of cycles remaining in which this user's packets are
+     * discarded.
+     */
+    private int mutedCycles;
+
+    private long handled;
+    private long deferred;
+    private long dropped;
+    private int floods;
+
+    public int used(int opcode) {
+        return used[opcode];
+    }
+
+    public int getHandledThisCycle() {
+        return handledThisCycle;
+    }
+
+    void use(int opcode) {
+        if (used[opcode]++ == 0)
+            touched[touches++] = opcode;
+        handledThisCycle++;
+        handled++;
+    }
+
+    void drop() {
+        dropped++;
+    }
+
+    /**
+     * Ends the current cycle.
+     *
+     * @param carried Denotes if packets were carried over to the next cycle.
+     * @return The amount of consecutive cycles that ended with packets carried
+     * over.
+     */
+    int finish(boolean carried) {
+        for (int index = 0; index < touches; index++) {
+            used[touched[index]] = 0;
+        }
+        touches = 0;
+        handledThisCycle = 0;
+        if (carried) {
+            deferred++;
+            return ++saturatedCycles;
+        }
+        return saturatedCycles = 0;
+    }
+
+    void flag(int muted) {
+        floods++;
+        saturatedCycles = 0;
+        mutedCycles = muted;
+    }
+
+    boolean mute() {
+        if (mutedCycles == 0)
+            return false;
+        mutedCycles--;
+        return true;
+    }
+
+    public boolean isMuted() {
+        return mutedCycles > 0;
+    }
+
+    /**
+     * Returns the amount of packets that have been handled.
+     *
+     * @return The returned amount.
+     */
+    public long getHandled() {
+        return handled;
+    }
+
+    /**
+     * Returns the amount of cycles that ended with packets carried over.
+     *
+     * @return The returned amount.
+     */
+    public long getDeferred() {
+        return deferred;
+    }
+
+    /**
+     * Returns the amount of packets discarded while muted.
+     *
+     * @return The returned amount.
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Returns the amount of times this user has been flagged for flooding.
+     *
+     * @return The returned amount.
+     */
+    public int getFloods() {
+        return floods;
+    }
+
+    @Override
+    public String toString() {
+        return "PacketStatistics[handled=" + handled + ", deferred=" + deferred + ", dropped=" + dropped
+                + ", floods=" + floods + "]";
+    }
+}
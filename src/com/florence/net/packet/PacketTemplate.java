@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2019 Dylan Vicchiarelli
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.florence.net.packet;
+
+import com.florence.net.OutByteBuffer;
+import com.florence.net.codec.GameMessageEncoder;
+import java.nio.ByteBuffer;
+
+/**
+ * A packet whose payload is the same for every user, encoded once. Every
+ * connection it is sent to shares the encoded frame; only the opcode is
+ * encrypted for each connection, as it is released onto the wire.
+ */
+public final class PacketTemplate {
+
+    private final PacketPriority priority;
+    private final Object coalescingKey;
+
+    /**
+     * The encoded frame with its opcode unencrypted. Never modified.
+     */
+    private final ByteBuffer frame;
+
+    /**
+     * Encodes a packet that does not depend on the user it is sent to.
+     *
+     * @param builder The packet.
+     */
+    public PacketTemplate(PacketBuilder builder) {
+        this.priority = builder.getPriority();
+        this.coalescingKey = builder.getCoalescingKey();
+        final OutByteBuffer encoded = new OutByteBuffer(GameMessageEncoder.FRAME_BUFFER_CAPACITY);
+        GameMessageEncoder.frame(builder, null, encoded);
+        encoded.flip();
+        this.frame = ByteBuffer.allocate(encoded.limit()).put(encoded.getBuffer()).flip().asReadOnlyBuffer();
+        encoded.release();
+    }
+
+    /**
+     * Creates a view of the encoded frame for a single connection. The view
+     * is read-only, which marks it as shared.
+     *
+     * @return The view, ready to be read.
+     */
+    public ByteBuffer share() {
+        return frame.duplicate();
+    }
+
+    public PacketPriority getPriority() {
+        return priority;
+    }
+
+    public Object getCoalescingKey() {
+        return coalescingKey;
+    }
+
+    public int getLength() {
+        return frame.remaining();
+    }
+}
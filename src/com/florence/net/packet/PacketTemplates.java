@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2019 Dylan Vicchiarelli
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.florence.net.packet;
+
+import com.florence.net.packet.builders.ChatboxMessagePacketBuilder;
+import com.florence.net.packet.builders.ClientConfigurationPacketBuilder;
+import com.florence.net.packet.builders.GameframeWidgetPacketBuilder;
+import com.florence.net.packet.builders.LoginPacketBuilder;
+import com.florence.net.packet.builders.LogoutPacketBuilder;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The packets that are identical for every user, encoded once at startup.
+ */
+public final class PacketTemplates {
+
+    /**
+     * Greets a user once they have been added to the world.
+     */
+    public static final PacketTemplate WELCOME_MESSAGE = message("Welcome to Florence.");
+
+    /**
+     * Switches the run button off.
+     */
+    public static final PacketTemplate RUN_DISABLED = new PacketTemplate(new ClientConfigurationPacketBuilder(
+            ClientConfigurationPacketBuilder.RUN_BUTTON_CONFIGURATION_INDEX, 0));
+
+    /**
+     * The sidebar interfaces every user is shown on login.
+     */
+    public static final List<PacketTemplate> GAMEFRAME_WIDGETS = Collections.unmodifiableList(Arrays.asList(
+            widget(1, GameframeWidgetPacketBuilder.SKILL_WIDGET_INTERFACE),
+            widget(2, GameframeWidgetPacketBuilder.QUEST_WIDGET_INTERFACE),
+            widget(3, GameframeWidgetPacketBuilder.INVENTORY_WIDGET_INTERFACE),
+            widget(4, GameframeWidgetPacketBuilder.EQUIPMENT_WIDGET_INTERFACE),
+            widget(5, GameframeWidgetPacketBuilder.PRAYER_WIDGET_INTERFACE),
+            widget(6, GameframeWidgetPacketBuilder.MAGIC_WIDGET_INTERFACE),
+            widget(8, GameframeWidgetPacketBuilder.FRIEND_WIDGET_INTERFACE),
+            widget(9, GameframeWidgetPacketBuilder.IGNORE_WIDGET_INTERFACE),
+            widget(10, GameframeWidgetPacketBuilder.LOGOUT_WIDGET_INTERFACE),
+            widget(11, GameframeWidgetPacketBuilder.OPTION_WIDGET_INTERFACE),
+            widget(12, GameframeWidgetPacketBuilder.EMOTE_WIDGET_INTERFACE),
+            widget(13, GameframeWidgetPacketBuilder.MUSIC_WIDGET_INTERFACE)));
+
+    public static final PacketTemplate LOGIN = new PacketTemplate(new LoginPacketBuilder());
+    public static final PacketTemplate LOGOUT = new PacketTemplate(new LogoutPacketBuilder());
+
+    public static final PacketTemplate NO_ENERGY_MESSAGE = message("You don't have any energy left.");
+    public static final PacketTemplate ENERGY_RESTORED_MESSAGE = message("Your run energy has been restored.");
+    public static final PacketTemplate NO_SPACE_TO_HOLD_MESSAGE = message("You don't have the required inventory space to hold this item.");
+    public static final PacketTemplate NO_SPACE_TO_EQUIP_MESSAGE = message("You don't have the required inventory space to equip this item.");
+    public static final PacketTemplate NO_SPACE_TO_REMOVE_MESSAGE = message("You don't have the required inventory space to remove this item.");
+    public static final PacketTemplate NOT_INTERESTED_MESSAGE = message("He doesn't seem interested in talking right now.");
+    public static final PacketTemplate MESSAGE_TOO_LONG_MESSAGE = message("This message is too long to be broadcasted.");
+    public static final PacketTemplate INVALID_CHARACTERS_MESSAGE = message("This message contains invalid characters.");
+    public static final PacketTemplate TELEPORT_DELAY_MESSAGE = message("Please wait a few moments before attempting to "
+            + "cast a spell again.");
+
+    private static PacketTemplate message(String text) {
+        return new PacketTemplate(new ChatboxMessagePacketBuilder(text));
+    }
+
+    private static PacketTemplate widget(int icon, int interface_) {
+        return new PacketTemplate(new GameframeWidgetPacketBuilder(icon, interface_));
+    }
+}
@@ -21,20 +21,19 @@ import com.florence.net.OutByteBuffer;
 import com.florence.net.packet.PacketBuilder;
 import com.florence.net.packet.PacketBuilderConstants;
 import com.florence.net.packet.PacketHeader;
+import com.florence.net.packet.PacketPriority;
 
 public class ChatboxMessagePacketBuilder extends PacketBuilder {
 
     private final String text;
 
     public ChatboxMessagePacketBuilder(String text) {
-        super(PacketBuilderConstants.CHATBOX_MESSAGE_PACKET_OPCODE, PacketHeader.VARIABLE_BYTE);
+        super(PacketBuilderConstants.CHATBOX_MESSAGE_PACKET_OPCODE, PacketHeader.VARIABLE_BYTE, PacketPriority.COSMETIC);
         this.text = text;
     }
 
     @Override
-    public OutByteBuffer build(Player player) {
-        OutByteBuffer buffer = new OutByteBuffer(text.length() + Byte.BYTES);
+    public void build(Player player, OutByteBuffer buffer) {
         buffer.writeString(text);
-        return buffer;
     }
 }
@@ -36,10 +36,13 @@ public class ClientConfigurationPacketBuilder extends PacketBuilder {
     }
 
     @Override
-    public OutByteBuffer build(Player player) {
-        OutByteBuffer buffer = new OutByteBuffer(Short.BYTES + Byte.BYTES);
+    public Object getCoalescingKey() {
+        return key(index);
+    }
+
+    @Override
+    public void build(Player player, OutByteBuffer buffer) {
         buffer.writeLEShort(index);
         buffer.writeByte(state);
-        return buffer;
     }
 }
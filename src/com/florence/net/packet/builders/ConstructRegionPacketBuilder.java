@@ -22,21 +22,20 @@ import com.florence.net.OutByteBuffer;
 import com.florence.net.packet.PacketBuilder;
 import com.florence.net.packet.PacketBuilderConstants;
 import com.florence.net.packet.PacketHeader;
+import com.florence.net.packet.PacketPriority;
 
 public class ConstructRegionPacketBuilder extends PacketBuilder {
 
     public ConstructRegionPacketBuilder() {
-        super(PacketBuilderConstants.CONSTRUCT_REGION_PACKET_OPCODE, PacketHeader.FIXED);
+        super(PacketBuilderConstants.CONSTRUCT_REGION_PACKET_OPCODE, PacketHeader.FIXED, PacketPriority.CRITICAL);
     }
 
     @Override
-    public OutByteBuffer build(Player player) {
+    public void build(Player player, OutByteBuffer buffer) {
         final Viewport viewport = new Viewport(player.getPosition());
         player.setRegion(player.getPosition());
 
-        final OutByteBuffer buffer = new OutByteBuffer(Short.BYTES + Short.BYTES);
         buffer.writeShortA(viewport.getRegionX() + 6);
         buffer.writeShort(viewport.getRegionY() + 6);
-        return buffer;
     }
 }
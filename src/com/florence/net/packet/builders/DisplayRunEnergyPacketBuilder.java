@@ -32,9 +32,12 @@ public class DisplayRunEnergyPacketBuilder extends PacketBuilder {
     }
 
     @Override
-    public OutByteBuffer build(Player player) {
-        OutByteBuffer buffer = new OutByteBuffer(Byte.BYTES);
+    public Object getCoalescingKey() {
+        return key(0);
+    }
+
+    @Override
+    public void build(Player player, OutByteBuffer buffer) {
         buffer.writeByte(energy);
-        return buffer;
     }
 }
@@ -48,10 +48,13 @@ public class GameframeWidgetPacketBuilder extends PacketBuilder {
     }
 
     @Override
-    public OutByteBuffer build(Player player) {
-        final OutByteBuffer buffer = new OutByteBuffer(Short.BYTES + Byte.BYTES);
+    public Object getCoalescingKey() {
+        return key(icon);
+    }
+
+    @Override
+    public void build(Player player, OutByteBuffer buffer) {
         buffer.writeShort(interface_);
         buffer.writeByteA(icon);
-        return buffer;
     }
 }
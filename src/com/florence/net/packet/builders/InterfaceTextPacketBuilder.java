@@ -34,10 +34,13 @@ public class InterfaceTextPacketBuilder extends PacketBuilder {
     }
 
     @Override
-    public OutByteBuffer build(Player player) {
-        OutByteBuffer buffer = new OutByteBuffer(text.length() + Short.BYTES + Byte.BYTES);
+    public Object getCoalescingKey() {
+        return key(interface_);
+    }
+
+    @Override
+    public void build(Player player, OutByteBuffer buffer) {
         buffer.writeString(text);
         buffer.writeShortA(interface_);
-        return buffer;
     }
 }
@@ -35,8 +35,12 @@ public class ItemInterfacePacketBuilder extends PacketBuilder {
     }
 
     @Override
-    public OutByteBuffer build(Player player) {
-        OutByteBuffer buffer = new OutByteBuffer(10 + (items.length * 10) + (items.length * 10));
+    public Object getCoalescingKey() {
+        return key(index);
+    }
+
+    @Override
+    public void build(Player player, OutByteBuffer buffer) {
         buffer.writeShort(index);
         buffer.writeShort(items.length);
         for (Item item : items) {
@@ -53,6 +57,5 @@ public class ItemInterfacePacketBuilder extends PacketBuilder {
                 buffer.writeLEShortA(0);
             }
         }
-        return buffer;
     }
 }
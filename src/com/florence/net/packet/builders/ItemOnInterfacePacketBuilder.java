@@ -36,11 +36,14 @@ public class ItemOnInterfacePacketBuilder extends PacketBuilder {
     }
 
     @Override
-    public OutByteBuffer build(Player player) {
-        OutByteBuffer buffer = new OutByteBuffer(Short.BYTES + Short.BYTES + Short.BYTES);
+    public Object getCoalescingKey() {
+        return key(index);
+    }
+
+    @Override
+    public void build(Player player, OutByteBuffer buffer) {
         buffer.writeLEShort(index);
         buffer.writeShort(zoom);
         buffer.writeShort(model);
-        return buffer;
     }
 }
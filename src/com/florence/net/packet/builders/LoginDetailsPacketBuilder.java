@@ -21,6 +21,7 @@ import com.florence.net.OutByteBuffer;
 import com.florence.net.packet.PacketBuilder;
 import com.florence.net.packet.PacketBuilderConstants;
 import com.florence.net.packet.PacketHeader;
+import com.florence.net.packet.PacketPriority;
 
 public class LoginDetailsPacketBuilder extends PacketBuilder {
 
@@ -31,16 +32,14 @@ public class LoginDetailsPacketBuilder extends PacketBuilder {
     private final boolean members;
 
     public LoginDetailsPacketBuilder(int index, boolean members) {
-        super(PacketBuilderConstants.LOGIN_DETAILS_PACKET_OPCODE, PacketHeader.FIXED);
+        super(PacketBuilderConstants.LOGIN_DETAILS_PACKET_OPCODE, PacketHeader.FIXED, PacketPriority.CRITICAL);
         this.index = index;
         this.members = members;
     }
 
     @Override
-    public OutByteBuffer build(Player player) {
-        OutByteBuffer buffer = new OutByteBuffer(Byte.BYTES + Short.BYTES);
+    public void build(Player player, OutByteBuffer buffer) {
         buffer.writeByteA(members ? MEMBER_STATUS : NON_MEMBER_STATUS);
         buffer.writeLEShortA(index);
-        return buffer;
     }
 }
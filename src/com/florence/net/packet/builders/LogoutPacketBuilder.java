@@ -21,16 +21,19 @@ import com.florence.net.OutByteBuffer;
 import com.florence.net.packet.PacketBuilder;
 import com.florence.net.packet.PacketBuilderConstants;
 import com.florence.net.packet.PacketHeader;
+import com.florence.net.packet.PacketPriority;
 
 public class LogoutPacketBuilder extends PacketBuilder {
 
     public LogoutPacketBuilder() {
-        super(PacketBuilderConstants.LOGOUT_USER_PACKET_OPCODE, PacketHeader.FIXED);
+        super(PacketBuilderConstants.LOGOUT_USER_PACKET_OPCODE, PacketHeader.FIXED, PacketPriority.CRITICAL);
     }
 
     @Override
-    public OutByteBuffer build(Player player) {
-        OutByteBuffer buffer = new OutByteBuffer(Byte.BYTES);
-        return buffer;
+    public void build(Player player, OutByteBuffer buffer) {
+
+        /**
+         * This packet has no payload.
+         */
     }
 }
@@ -28,30 +28,30 @@ import com.florence.net.OutByteBuffer.OutByteBufferAccess;
 import com.florence.net.packet.PacketBuilder;
 import com.florence.net.packet.PacketBuilderConstants;
 import com.florence.net.packet.PacketHeader;
+import com.florence.net.packet.PacketPriority;
 import java.util.Iterator;
 
 public class MobUpdatePacketBuilder extends PacketBuilder {
 
     /**
-     * The memory allocation for the primary block. If output errors occur in
-     * regards to capacity, operations should be limited per-cycle instead of
-     * expanding this capacity.
+     * The initial memory allocation for the appended block. The primary block
+     * is written straight into the frame.
      */
-    public static final int MAIN_PACKET_ALLOCATION = 2048;
+    public static final int UPDATE_STATE_ALLOCATION = 1024;
 
     /**
-     * The memory allocation for the appended block.
+     * The appended block, reused for every user. Only ever written by the
+     * world's thread.
      */
-    public static final int UPDATE_STATE_ALLOCATION = 1024;
+    private final OutByteBuffer update = new OutByteBuffer(UPDATE_STATE_ALLOCATION);
 
     public MobUpdatePacketBuilder() {
-        super(PacketBuilderConstants.UPDATE_MOB_PACKET_OPCODE, PacketHeader.VARIABLE_SHORT);
+        super(PacketBuilderConstants.UPDATE_MOB_PACKET_OPCODE, PacketHeader.VARIABLE_SHORT, PacketPriority.UPDATE);
     }
 
     @Override
-    public OutByteBuffer build(Player player) {
-        final OutByteBuffer buffer = new OutByteBuffer(MAIN_PACKET_ALLOCATION);
-        final OutByteBuffer update = new OutByteBuffer(UPDATE_STATE_ALLOCATION);
+    public void build(Player player, OutByteBuffer buffer) {
+        update.clear();
         buffer.access(OutByteBuffer.OutByteBufferAccess.BIT_ACCESS);
         buffer.writeBits(OutByteBuffer.BITS_IN_A_BYTE, player.getLocalMobs().size());
 
@@ -130,7 +130,6 @@ public class MobUpdatePacketBuilder extends PacketBuilder {
         } else {
             buffer.access(OutByteBufferAccess.BYTE_ACCESS);
         }
-        return buffer;
     }
 
     public void updateMovement(Mob mob, OutByteBuffer buffer) {
@@ -31,20 +31,15 @@ import com.florence.net.OutByteBuffer.OutByteBufferAccess;
 import com.florence.net.packet.PacketBuilder;
 import com.florence.net.packet.PacketBuilderConstants;
 import com.florence.net.packet.PacketHeader;
+import com.florence.net.packet.PacketPriority;
 import com.florence.util.StringUtil;
 import java.util.Iterator;
 
 public class PlayerUpdatePacketBuilder extends PacketBuilder {
 
     /**
-     * The memory allocation for the primary block. If output errors occur in
-     * regards to capacity, operations should be limited per-cycle instead of
-     * expanding this capacity.
-     */
-    public static final int MAIN_PACKET_ALLOCATION = 8192;
-
-    /**
-     * The memory allocation for the appended block.
+     * The initial memory allocation for the appended block. The primary block
+     * is written straight into the frame.
      */
     public static final int UPDATE_STATE_ALLOCATION = 4096;
 
@@ -53,17 +48,25 @@ public class PlayerUpdatePacketBuilder extends PacketBuilder {
      */
     public static final int MAXIMUM_RENDERS_PER_CYCLE = 20;
 
+    /**
+     * The initial memory allocation for a user's appearance.
+     */
+    public static final int APPEARANCE_ALLOCATION = 128;
+
+    /**
+     * The appended block and the appearance within it, reused for every user.
+     * Only ever written by the world's thread.
+     */
+    private final OutByteBuffer update = new OutByteBuffer(UPDATE_STATE_ALLOCATION);
+    private final OutByteBuffer properties = new OutByteBuffer(APPEARANCE_ALLOCATION);
+
     public PlayerUpdatePacketBuilder() {
-        super(PacketBuilderConstants.UPDATE_PLAYER_PACKET_OPCODE, PacketHeader.VARIABLE_SHORT);
+        super(PacketBuilderConstants.UPDATE_PLAYER_PACKET_OPCODE, PacketHeader.VARIABLE_SHORT, PacketPriority.UPDATE);
     }
 
     @Override
-    public OutByteBuffer build(Player player) {
-        if (player.getRegionState().equals(RegionState.REBUILDING_REGION))
-            player.encode(new ConstructRegionPacketBuilder());
-
-        final OutByteBuffer buffer = new OutByteBuffer(MAIN_PACKET_ALLOCATION);
-        final OutByteBuffer update = new OutByteBuffer(UPDATE_STATE_ALLOCATION);
+    public void build(Player player, OutByteBuffer buffer) {
+        update.clear();
         buffer.access(OutByteBufferAccess.BIT_ACCESS);
 
         /**
@@ -145,7 +148,6 @@ public class PlayerUpdatePacketBuilder extends PacketBuilder {
         } else {
             buffer.access(OutByteBufferAccess.BYTE_ACCESS);
         }
-        return buffer;
     }
 
     public void updateState(Player player, OutByteBuffer update, boolean forced, boolean chat) {
@@ -194,7 +196,7 @@ public class PlayerUpdatePacketBuilder extends PacketBuilder {
             }
         }
         if (player.getUpdateFlags().has(UpdateFlag.APPEARANCE) || forced) {
-            OutByteBuffer properties = new OutByteBuffer(128);
+            properties.clear();
             properties.writeByte(player.getAppearance().getGender().getValue());
             properties.writeByte(0);
             if (player.getEquipment().getItems()[EquipmentContainer.EQUIPMENT_SLOT_HEAD] != null) {
@@ -36,11 +36,14 @@ public class SkillInterfacePacketBuilder extends PacketBuilder {
     }
 
     @Override
-    public OutByteBuffer build(Player player) {
-        OutByteBuffer buffer = new OutByteBuffer(Byte.BYTES + Byte.BYTES + Integer.BYTES);
+    public Object getCoalescingKey() {
+        return key(skill);
+    }
+
+    @Override
+    public void build(Player player, OutByteBuffer buffer) {
         buffer.writeByte(skill);
         buffer.writeInvInteger(experience);
         buffer.writeByte(level);
-        return buffer;
     }
 }
@@ -22,14 +22,23 @@ import com.florence.model.mob.Mob;
 import com.florence.model.player.Player;
 import com.florence.net.packet.Packet;
 import com.florence.net.packet.PacketDecoder;
+import com.florence.net.packet.messages.MobMessage;
 import com.florence.task.impl.EntityCombatFollowingTask;
 import com.florence.task.impl.PlayerToEntityCombatTask;
 
-public class AttackMobPacketDecoder implements PacketDecoder {
+public class AttackMobPacketDecoder implements PacketDecoder<MobMessage> {
 
     @Override
-    public void decode(Packet packet, Player player) {
+    public MobMessage parse(Packet packet) {
         final int index = packet.readShortA();
+        if (index < 1 || index > World.MAXIMUM_MOBS)
+            return null;
+        return new MobMessage(packet.getOpcode(), index);
+    }
+
+    @Override
+    public void decode(MobMessage message, Player player) {
+        final int index = message.getIndex();
 
         /**
          * We're already in combat with this non-player character.
@@ -20,19 +20,25 @@ import com.florence.model.UpdateFlags.UpdateFlag;
 import com.florence.model.player.Player;
 import com.florence.net.packet.Packet;
 import com.florence.net.packet.PacketDecoder;
+import com.florence.net.packet.messages.ChatMessage;
 
-public class ChatPacketDecoder implements PacketDecoder {
+public class ChatPacketDecoder implements PacketDecoder<ChatMessage> {
 
     @Override
-    public void decode(Packet packet, Player player) {
+    public ChatMessage parse(Packet packet) {
         final int effects = packet.readByteS();
         final int color = packet.readByteS();
         final int length = (packet.getLength() - 2);
-        final byte[] message = packet.readBytesA(length);
+        if (length < 0)
+            return null;
+        return new ChatMessage(packet.getOpcode(), effects, color, packet.readBytesA(length));
+    }
 
-        player.setChatEffects(effects);
-        player.setChatColor(color);
-        player.setChat(message);
+    @Override
+    public void decode(ChatMessage message, Player player) {
+        player.setChatEffects(message.getEffects());
+        player.setChatColor(message.getColor());
+        player.setChat(message.getText());
 
         player.getUpdateFlags().add(UpdateFlag.CHAT);
     }
@@ -22,19 +22,33 @@ import com.florence.model.player.Player;
 import com.florence.net.packet.Packet;
 import com.florence.net.packet.PacketDecoder;
 import com.florence.net.packet.PacketDecoderConstants;
+import com.florence.net.packet.messages.MobMessage;
 import com.florence.task.impl.WalkToMobTask;
 import com.florence.task.impl.WalkToMobTask.ClickOption;
 
-public class ClickMobPacketDecoder implements PacketDecoder {
+public class ClickMobPacketDecoder implements PacketDecoder<MobMessage> {
 
     @Override
-    public void decode(Packet packet, Player player) {
+    public MobMessage parse(Packet packet) {
         final int opcode = packet.getOpcode();
         switch (opcode) {
 
             case PacketDecoderConstants.FIRST_CLICK_MOB_PACKET_OPCODE:
                 final int index = packet.readLEShort();
-                final Mob mob = World.singleton().getMobs().get(index);
+                if (index < 1 || index > World.MAXIMUM_MOBS)
+                    return null;
+                return new MobMessage(opcode, index);
+        }
+        return null;
+    }
+
+    @Override
+    public void decode(MobMessage message, Player player) {
+        final int opcode = message.getOpcode();
+        switch (opcode) {
+
+            case PacketDecoderConstants.FIRST_CLICK_MOB_PACKET_OPCODE:
+                final Mob mob = World.singleton().getMobs().get(message.getIndex());
                 if (mob == null)
                     return;
 
@@ -22,11 +22,15 @@ import com.florence.model.World;
 import com.florence.model.item.Item;
 import com.florence.net.packet.Packet;
 import com.florence.net.packet.PacketDecoder;
+import com.florence.net.packet.PacketDecoderTable;
+import com.florence.net.packet.PacketTemplate;
+import com.florence.net.packet.PacketTemplates;
 import com.florence.net.packet.builders.ChatboxMessagePacketBuilder;
+import com.florence.net.packet.messages.CommandMessage;
 import com.florence.util.ByteBufferUtil;
 import com.florence.util.StringUtil;
 
-public class CommandPacketDecoder implements PacketDecoder {
+public class CommandPacketDecoder implements PacketDecoder<CommandMessage> {
 
     /**
      * The maximum amount of characters that a broadcasted message can contain.
@@ -34,10 +38,17 @@ public class CommandPacketDecoder implements PacketDecoder {
     public static final int MAXIMUM_YELL_LENGTH = 50;
 
     @Override
-    public void decode(Packet packet, Player player) {
+    public CommandMessage parse(Packet packet) {
         final String context = ByteBufferUtil.readString(packet.getBuffer());
-        final String[] arguments = context.split(" ");
-        final String command = arguments[0];
+        if (context.isEmpty())
+            return null;
+        return new CommandMessage(packet.getOpcode(), context.split(" "));
+    }
+
+    @Override
+    public void decode(CommandMessage request, Player player) {
+        final String[] arguments = request.getArguments();
+        final String command = request.getCommand();
         try {
             if (command.equalsIgnoreCase("yell")) {
                 String message = "";
@@ -46,22 +57,19 @@ public class CommandPacketDecoder implements PacketDecoder {
                     message += " " + sub;
                 }
                 if (message.length() > MAXIMUM_YELL_LENGTH) {
-                    player.encode(new ChatboxMessagePacketBuilder("This message is too long to be broadcasted."));
+                    player.encode(PacketTemplates.MESSAGE_TOO_LONG_MESSAGE);
                     return;
                 }
                 if (message.contains(":tradereq:") || message.contains(":duelreq:")) {
-                    player.encode(new ChatboxMessagePacketBuilder("This message contains invalid characters."));
+                    player.encode(PacketTemplates.INVALID_CHARACTERS_MESSAGE);
                     return;
                 }
-                for (Player other : World.singleton().getPlayers()) {
-                    if (other == null)
-                        continue;
-                    other.encode(new ChatboxMessagePacketBuilder(StringUtil.format(player.getUsername()) + " : " + message));
-                }
+                World.singleton().broadcast(new PacketTemplate(new ChatboxMessagePacketBuilder(
+                        StringUtil.format(player.getUsername()) + " : " + message)));
 
             } else if (command.equalsIgnoreCase("restore")) {
                 player.getWalkingQueue().setEnergy(WalkingQueue.MAXIMUM_RUN_ENERGY);
-                player.encode(new ChatboxMessagePacketBuilder("Your run energy has been restored."));
+                player.encode(PacketTemplates.ENERGY_RESTORED_MESSAGE);
 
             } else if (command.equalsIgnoreCase("add")) {
                 final int index = Integer.parseInt(arguments[1]);
@@ -83,6 +91,14 @@ public class CommandPacketDecoder implements PacketDecoder {
                 if (skill == -1 || experience == -1)
                     return;
                 player.getSkillSet().addExperience(skill, experience);
+
+            } else if (command.equalsIgnoreCase("timings")) {
+                final PacketDecoderTable table = World.singleton().getPackets();
+                if (table.isTiming())
+                    table.report();
+                table.setTiming(!table.isTiming());
+                player.encode(new ChatboxMessagePacketBuilder("Inbound frame timing has been "
+                        + (table.isTiming() ? "enabled." : "disabled, see the console for the report.")));
             }
         } catch (Exception exception) {
             player.encode(new ChatboxMessagePacketBuilder("Error while parsing command. " + exception.getMessage() + "."));
@@ -22,26 +22,33 @@ import com.florence.model.item.InventoryContainer;
 import com.florence.model.item.Item;
 import com.florence.net.packet.Packet;
 import com.florence.net.packet.PacketDecoder;
+import com.florence.net.packet.messages.EquipItemMessage;
 
-public class EquipItemPacketDecoder implements PacketDecoder {
+public class EquipItemPacketDecoder implements PacketDecoder<EquipItemMessage> {
 
     @Override
-    public void decode(Packet packet, Player player) {
+    public EquipItemMessage parse(Packet packet) {
         final int index = packet.readShort();
         final int slot = packet.readShortA();
         final int widget = packet.readShortA();
+        if (slot < 0 || slot >= InventoryContainer.INVENTORY_CAPACITY)
+            return null;
+        return new EquipItemMessage(packet.getOpcode(), index, slot, widget);
+    }
 
-        switch (widget) {
+    @Override
+    public void decode(EquipItemMessage message, Player player) {
+        switch (message.getWidget()) {
 
             case InventoryContainer.INVENTORY_INTERFACE:
-                final Item item = player.getInventory().getItems()[slot];
+                final Item item = player.getInventory().getItems()[message.getSlot()];
                 if (item == null)
                     return;
-                if (item.getIndex() != index)
+                if (item.getIndex() != message.getIndex())
                     return;
                 if (!EquipmentRequirementTable.check(player, item.getIndex()))
                     return;
-                player.getEquipment().equip(item.getIndex(), slot);
+                player.getEquipment().equip(item.getIndex(), message.getSlot());
                 break;
         }
     }
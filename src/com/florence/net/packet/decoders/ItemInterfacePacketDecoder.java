@@ -24,12 +24,13 @@ import com.florence.model.item.ItemDefinitions;
 import com.florence.net.packet.Packet;
 import com.florence.net.packet.PacketDecoder;
 import com.florence.net.packet.PacketDecoderConstants;
-import com.florence.net.packet.builders.ChatboxMessagePacketBuilder;
+import com.florence.net.packet.PacketTemplates;
+import com.florence.net.packet.messages.ItemInterfaceMessage;
 
-public class ItemInterfacePacketDecoder implements PacketDecoder {
+public class ItemInterfacePacketDecoder implements PacketDecoder<ItemInterfaceMessage> {
 
     @Override
-    public void decode(Packet packet, Player player) {
+    public ItemInterfaceMessage parse(Packet packet) {
         final int opcode = packet.getOpcode();
         switch (opcode) {
 
@@ -37,8 +38,25 @@ public class ItemInterfacePacketDecoder implements PacketDecoder {
                 final int widget = packet.readShortA() & 0xFFFF;
                 final int slot = packet.readShortA() & 0xFFFF;
                 final int index = packet.readShortA() & 0xFFFF;
+                if (index >= ItemDefinitions.getDefinitions().length)
+                    return null;
+                if (widget == EquipmentContainer.EQUIPMENT_INTERFACE && slot >= EquipmentContainer.EQUIPMENT_CAPACITY)
+                    return null;
+                return new ItemInterfaceMessage(opcode, widget, slot, index);
+        }
+        return null;
+    }
+
+    @Override
+    public void decode(ItemInterfaceMessage message, Player player) {
+        final int opcode = message.getOpcode();
+        switch (opcode) {
+
+            case PacketDecoderConstants.SELECT_ONE_PACKET_OPCODE:
+                final int slot = message.getSlot();
+                final int index = message.getIndex();
 
-                switch (widget) {
+                switch (message.getWidget()) {
 
                     case EquipmentContainer.EQUIPMENT_INTERFACE:
                         final Item item = player.getEquipment().getItems()[slot];
@@ -48,7 +66,7 @@ public class ItemInterfacePacketDecoder implements PacketDecoder {
                             return;
                         if (player.getInventory().available() == 0
                                 && !(ItemDefinitions.getDefinitions()[index].isStackable() && player.getInventory().contains(index))) {
-                            player.encode(new ChatboxMessagePacketBuilder("You don't have the required inventory space to remove this item."));
+                            player.encode(PacketTemplates.NO_SPACE_TO_REMOVE_MESSAGE);
                             return;
                         }
                         player.getInventory().add(new Item(index, item.getAmount()));
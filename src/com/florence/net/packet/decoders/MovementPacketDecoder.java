@@ -18,35 +18,19 @@
 package com.florence.net.packet.decoders;
 
 import com.florence.model.UpdateFlags.UpdateFlag;
+import com.florence.model.WalkingQueue;
 import com.florence.model.player.Player;
 import com.florence.net.packet.Packet;
 import com.florence.net.packet.PacketDecoder;
 import com.florence.net.packet.PacketDecoderConstants;
+import com.florence.net.packet.messages.WalkMessage;
 
-public class MovementPacketDecoder implements PacketDecoder {
+public class MovementPacketDecoder implements PacketDecoder<WalkMessage> {
 
     @Override
-    public void decode(Packet packet, Player player) {
+    public WalkMessage parse(Packet packet) {
         int length = packet.getLength();
-        final int opcode = packet.getOpcode();
-
-        /**
-         * Cancels the current interaction with another entity if the user has
-         * clicked on either the map or the ground. Packet 98 is excluded as
-         * that would nullify the target immediately when routing to an entity.
-         */
-        if (opcode != PacketDecoderConstants.WALK_TO_PACKET_OPCODE && player.getInteractingEntity() != null) {
-            player.setInteractingEntity(null);
-
-            /**
-             * Resets the user's focused direction.
-             */
-            player.getUpdateFlags().add(UpdateFlag.FACE_ENTITY_UPDATE);
-        }
-
-        if (player.hasTeleported())
-            return;
-        if (opcode == PacketDecoderConstants.MAP_WALK_PACKET_OPCODE) {
+        if (packet.getOpcode() == PacketDecoderConstants.MAP_WALK_PACKET_OPCODE) {
 
             /**
              * Assumed to be in regards to anti-cheat software.
@@ -54,24 +38,25 @@ public class MovementPacketDecoder implements PacketDecoder {
             length -= 14;
         }
 
-        player.getWalkingQueue().reset();
-
         /**
-         * The amount of steps in this path.
+         * The amount of steps in this path, excluding the first.
          */
         final int steps = (length - 5) / 2;
+        if (steps < 0 || steps >= WalkingQueue.MAXIMUM_PATH_LENGTH)
+            return null;
 
         /**
-         * The path.
+         * The path. The first step is absolute while the remaining steps are
+         * sent relative to it.
          */
-        final int[][] path = new int[steps][2];
+        final int[][] path = new int[steps + 1][2];
 
         /**
          * The X coordinate.
          */
         final int x = packet.readLEShortA();
 
-        for (int i = 0; i < steps; i++) {
+        for (int i = 1; i <= steps; i++) {
             path[i][0] = packet.getBuffer().get();
             path[i][1] = packet.getBuffer().get();
         }
@@ -81,21 +66,40 @@ public class MovementPacketDecoder implements PacketDecoder {
          */
         final int y = packet.readLEShort();
 
-        /**
-         * Adds the first step.
-         */
-        player.getWalkingQueue().step(x, y);
-
-        for (int i = 0; i < steps; i++) {
+        path[0][0] = x;
+        path[0][1] = y;
+        for (int i = 1; i <= steps; i++) {
             path[i][0] += x;
             path[i][1] += y;
+        }
+        return new WalkMessage(packet.getOpcode(), path);
+    }
+
+    @Override
+    public void decode(WalkMessage message, Player player) {
+        final int opcode = message.getOpcode();
+
+        /**
+         * Cancels the current interaction with another entity if the user has
+         * clicked on either the map or the ground. Packet 98 is excluded as
+         * that would nullify the target immediately when routing to an entity.
+         */
+        if (opcode != PacketDecoderConstants.WALK_TO_PACKET_OPCODE && player.getInteractingEntity() != null) {
+            player.setInteractingEntity(null);
 
             /**
-             * Fills in the remaining steps.
+             * Resets the user's focused direction.
              */
-            player.getWalkingQueue().step(path[i][0], path[i][1]);
+            player.getUpdateFlags().add(UpdateFlag.FACE_ENTITY_UPDATE);
         }
 
+        if (player.hasTeleported())
+            return;
+
+        player.getWalkingQueue().reset();
+        for (int[] step : message.getPath()) {
+            player.getWalkingQueue().step(step[0], step[1]);
+        }
         player.getWalkingQueue().finish();
     }
 }
@@ -23,10 +23,11 @@ import com.florence.model.content.EmoteButtons;
 import com.florence.model.content.StandardTeleportSpell;
 import com.florence.net.packet.Packet;
 import com.florence.net.packet.PacketDecoder;
+import com.florence.net.packet.PacketTemplates;
 import com.florence.net.packet.builders.ChatboxMessagePacketBuilder;
-import com.florence.net.packet.builders.LogoutPacketBuilder;
+import com.florence.net.packet.messages.PressButtonMessage;
 
-public class PressButtonPacketDecoder implements PacketDecoder {
+public class PressButtonPacketDecoder implements PacketDecoder<PressButtonMessage> {
 
     public static final int TOGGLE_WALK_BUTTON = 152;
     public static final int TOGGLE_RUN_BUTTON = 153;
@@ -37,15 +38,20 @@ public class PressButtonPacketDecoder implements PacketDecoder {
     public static final int LOGOUT_BUTTON = 2458;
 
     @Override
-    public void decode(Packet packet, Player player) {
-        int button = packet.getBuffer().getShort();
+    public PressButtonMessage parse(Packet packet) {
+        return new PressButtonMessage(packet.getOpcode(), packet.getBuffer().getShort());
+    }
+
+    @Override
+    public void decode(PressButtonMessage message, Player player) {
+        final int button = message.getButton();
 
         EmoteButtons.pressed(button, player);
         switch (button) {
 
             case LOGOUT_BUTTON:
-                player.encode(new LogoutPacketBuilder());
-                player.disconnect();
+                player.encode(PacketTemplates.LOGOUT);
+                player.logout();
                 break;
 
             case VARROCK_TELEPORT_BUTTON:
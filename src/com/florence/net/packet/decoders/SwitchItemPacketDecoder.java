@@ -20,20 +20,29 @@ import com.florence.model.player.Player;
 import com.florence.model.item.InventoryContainer;
 import com.florence.net.packet.Packet;
 import com.florence.net.packet.PacketDecoder;
+import com.florence.net.packet.messages.SwitchItemMessage;
 
-public class SwitchItemPacketDecoder implements PacketDecoder {
+public class SwitchItemPacketDecoder implements PacketDecoder<SwitchItemMessage> {
 
     @Override
-    public void decode(Packet packet, Player player) {
+    public SwitchItemMessage parse(Packet packet) {
         final int widget = packet.readLEShortA();
         packet.readByte();
         final int first = packet.readLEShortA();
         final int second = packet.readLEShort();
+        if (widget == InventoryContainer.INVENTORY_INTERFACE
+                && (first < 0 || first >= InventoryContainer.INVENTORY_CAPACITY
+                || second < 0 || second >= InventoryContainer.INVENTORY_CAPACITY))
+            return null;
+        return new SwitchItemMessage(packet.getOpcode(), widget, first, second);
+    }
 
-        switch (widget) {
+    @Override
+    public void decode(SwitchItemMessage message, Player player) {
+        switch (message.getWidget()) {
 
             case InventoryContainer.INVENTORY_INTERFACE:
-                player.getInventory().swap(first, second);
+                player.getInventory().swap(message.getFirst(), message.getSecond());
                 break;
         }
     }
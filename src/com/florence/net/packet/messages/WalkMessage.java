@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2019 Dylan Vicchiarelli
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.florence.net.packet.messages;
+
+import com.florence.net.packet.Message;
+
+public final class WalkMessage extends Message {
+
+    /**
+     * The absolute coordinates of each step, beginning with the first. Must
+     * not be modified.
+     */
+    private final int[][] path;
+
+    public WalkMessage(int opcode, int[][] path) {
+        super(opcode);
+        this.path = path;
+    }
+
+    public int[][] getPath() {
+        return path;
+    }
+}
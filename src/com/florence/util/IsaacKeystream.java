@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2019 Dylan Vicchiarelli
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.florence.util;
+
+/**
+ * Bob Jenkins' ISAAC generator, used to encrypt packet opcodes. Output is
+ * identical to {@code com.aranea.cryptography.ISAACCipher} given the same
+ * seeds. Keystream is generated in blocks of {@link #SIZE} words and handed
+ * out from the end of each block towards its start.
+ */
+public final class IsaacKeystream {
+
+    /**
+     * The amount of words generated per block.
+     */
+    public static final int SIZE = 256;
+
+    /**
+     * The golden ratio, used to initialize the internal state.
+     */
+    private static final int RATIO = 0x9E3779B9;
+
+    /**
+     * Masks a word into a byte offset within the internal state.
+     */
+    private static final int MASK = (SIZE - 1) << 2;
+
+    private final int[] keystream = new int[SIZE];
+    private final int[] memory = new int[SIZE];
+    private int a;
+    private int b;
+    private int c;
+
+    /**
+     * The amount of words remaining in the current block.
+     */
+    private int cursor;
+
+    public IsaacKeystream(int[] seeds) {
+        System.arraycopy(seeds, 0, keystream, 0, seeds.length);
+        initialize();
+    }
+
+    /**
+     * Returns the next word of keystream.
+     *
+     * @return The word.
+     */
+    public int getNextValue() {
+        if (cursor == 0) {
+            generate();
+            cursor = SIZE;
+        }
+        return keystream[--cursor];
+    }
+
+    /**
+     * Fills the keystream with the next block of words.
+     */
+    private void generate() {
+        final int[] memory = this.memory;
+        final int[] keystream = this.keystream;
+        int a = this.a;
+        int b = this.b + ++c;
+        for (int index = 0, other = SIZE / 2; index < SIZE; other &= SIZE - 1) {
+            int x = memory[index];
+            a ^= a << 13;
+            a += memory[other++];
+            int y = memory[index] = memory[(x & MASK) >> 2] + a + b;
+            keystream[index++] = b = memory[(y >> 8 & MASK) >> 2] + x;
+
+            x = memory[index];
+            a ^= a >>> 6;
+            a += memory[other++];
+            memory[index] = y = memory[(x & MASK) >> 2] + a + b;
+            keystream[index++] = b = memory[(y >> 8 & MASK) >> 2] + x;
+
+            x = memory[index];
+            a ^= a << 2;
+            a += memory[other++];
+            memory[index] = y = memory[(x & MASK) >> 2] + a + b;
+            keystream[index++] = b = memory[(y >> 8 & MASK) >> 2] + x;
+
+            x = memory[index];
+            a ^= a >>> 16;
+            a += memory[other++];
+            memory[index] = y = memory[(x & MASK) >> 2] + a + b;
+            keystream[index++] = b = memory[(y >> 8 & MASK) >> 2] + x;
+        }
+        this.a = a;
+        this.b = b;
+    }
+
+    /**
+     * Mixes the seeds into the internal state and generates the first block.
+     */
+    private void initialize() {
+        int h, g, f, e, d, c, b, a;
+        h = g = f = e = d = c = b = a = RATIO;
+        for (int round = 0; round < 4; round++) {
+            a ^= b << 11; d += a; b += c;
+            b ^= c >>> 2; e += b; c += d;
+            c ^= d << 8; f += c; d += e;
+            d ^= e >>> 16; g += d; e += f;
+            e ^= f << 10; h += e; f += g;
+            f ^= g >>> 4; a += f; g += h;
+            g ^= h << 8; b += g; h += a;
+            h ^= a >>> 9; c += h; a += b;
+        }
+        for (int pass = 0; pass < 2; pass++) {
+            final int[] source = pass == 0 ? keystream : memory;
+            for (int index = 0; index < SIZE; index += 8) {
+                a += source[index];
+                b += source[index + 1];
+                c += source[index + 2];
+                d += source[index + 3];
+                e += source[index + 4];
+                f += source[index + 5];
+                g += source[index + 6];
+                h += source[index + 7];
+                a ^= b << 11; d += a; b += c;
+                b ^= c >>> 2; e += b; c += d;
+                c ^= d << 8; f += c; d += e;
+                d ^= e >>> 16; g += d; e += f;
+                e ^= f << 10; h += e; f += g;
+                f ^= g >>> 4; a += f; g += h;
+                g ^= h << 8; b += g; h += a;
+                h ^= a >>> 9; c += h; a += b;
+                memory[index] = a;
+                memory[index + 1] = b;
+                memory[index + 2] = c;
+                memory[index + 3] = d;
+                memory[index + 4] = e;
+                memory[index + 5] = f;
+                memory[index + 6] = g;
+                memory[index + 7] = h;
+            }
+        }
+        generate();
+        cursor = SIZE;
+    }
+}
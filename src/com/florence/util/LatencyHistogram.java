@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2019 Dylan Vicchiarelli
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.florence.util;
+
+import java.util.Arrays;
+
+/**
+ * Records durations into power of two buckets of nanoseconds. Not thread
+ * safe; recorded by a single thread, although other threads may read an
+ * approximate snapshot.
+ */
+public class LatencyHistogram {
+
+    /**
+     * The amount of buckets. The last bucket holds every duration of at least
+     * two to the power of its index in nanoseconds, roughly two seconds.
+     */
+    public static final int BUCKETS = 32;
+
+    private final long[] buckets = new long[BUCKETS];
+    private long count;
+    private long total;
+    private long maximum;
+
+    public void record(long nanoseconds) {
+        if (nanoseconds < 0)
+            nanoseconds = 0;
+        buckets[Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(nanoseconds | 1))]++;
+        count++;
+        total += nanoseconds;
+        if (nanoseconds > maximum)
+            maximum = nanoseconds;
+    }
+
+    /**
+     * Estimates a percentile as the upper bound of the bucket it falls in.
+     *
+     * @param percentile The percentile, between zero and one hundred.
+     * @return The estimate in nanoseconds.
+     */
+    public long percentile(double percentile) {
+        if (count == 0)
+            return 0;
+        final long target = (long) Math.ceil(count * (percentile / 100.0));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += buckets[bucket];
+            if (seen >= target)
+                return Math.min(maximum, (1L << (bucket + 1)) - 1);
+        }
+        return maximum;
+    }
+
+    public void reset() {
+        Arrays.fill(buckets, 0);
+        count = 0;
+        total = 0;
+        maximum = 0;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getMaximum() {
+        return maximum;
+    }
+
+    public long getMean() {
+        return count == 0 ? 0 : total / count;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram[count=" + count + ", mean=" + getMean() + "ns, p50=" + percentile(50)
+                + "ns, p99=" + percentile(99) + "ns, max=" + maximum + "ns]";
+    }
+}
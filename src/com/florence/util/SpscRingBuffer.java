@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2019 Dylan Vicchiarelli
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.florence.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.Consumer;
+
+/**
+ * A bounded, lock-free ring buffer for handing elements from exactly one
+ * producer thread to exactly one consumer thread.
+ *
+ * The producer and consumer sequences are separated by padding so that each
+ * sits on its own cache line, and each side caches the other side's sequence
+ * so that the shared counters are only read when the cached value suggests
+ * the buffer is full or empty.
+ *
+ * @param <T> The type of element.
+ */
+public final class SpscRingBuffer<T> extends SpscRingBufferProducerFields {
+
+    /**
+     * Invoked on the producer's thread when an element is added to a full
+     * buffer.
+     *
+     * @param <T> The type of element.
+     */
+    @FunctionalInterface
+    public interface OverflowPolicy<T> {
+
+        void overflow(T element);
+    }
+
+    private static final VarHandle HEAD;
+    private static final VarHandle TAIL;
+    private static final VarHandle ELEMENTS = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            HEAD = lookup.findVarHandle(SpscRingBufferConsumerFields.class, "head", long.class);
+            TAIL = lookup.findVarHandle(SpscRingBufferProducerFields.class, "tail", long.class);
+        } catch (ReflectiveOperationException exception) {
+            throw new ExceptionInInitializerError(exception);
+        }
+    }
+
+    long p20, p21, p22, p23, p24, p25, p26, p27;
+
+    private final Object[] elements;
+    private final int mask;
+    private OverflowPolicy<T> policy;
+
+    public SpscRingBuffer(int capacity) {
+        this(capacity, null);
+    }
+
+    public SpscRingBuffer(int capacity, OverflowPolicy<T> policy) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("Capacity must be a power of two.");
+        this.elements = new Object[capacity];
+        this.mask = capacity - 1;
+        this.policy = policy;
+    }
+
+    /**
+     * Inserts an element if there is space for it. Must only be called by the
+     * producer.
+     *
+     * @param element The element.
+     * @return If the element was inserted.
+     */
+    public boolean offer(T element) {
+        if (element == null)
+            throw new NullPointerException("Elements may not be null.");
+        final long tail = this.tail;
+        if (tail - headCache >= elements.length) {
+            headCache = (long) HEAD.getAcquire(this);
+            if (tail - headCache >= elements.length)
+                return false;
+        }
+        ELEMENTS.set(elements, (int) tail & mask, element);
+        TAIL.setRelease(this, tail + 1);
+        return true;
+    }
+
+    /**
+     * Inserts an element, handing it to this buffer's overflow policy if the
+     * buffer is full. Must only be called by the producer.
+     *
+     * @param element The element.
+     * @return If the element was inserted.
+     */
+    public boolean add(T element) {
+        if (offer(element))
+            return true;
+        if (policy != null)
+            policy.overflow(element);
+        return false;
+    }
+
+    /**
+     * Returns the next element without removing it. Must only be called by
+     * the consumer.
+     *
+     * @return The next element, or null if this buffer is empty.
+     */
+    @SuppressWarnings("unchecked")
+    public T peek() {
+        final long head = this.head;
+        if (head >= tailCache) {
+            tailCache = (long) TAIL.getAcquire(this);
+            if (head >= tailCache)
+                return null;
+        }
+        return (T) ELEMENTS.get(elements, (int) head & mask);
+    }
+
+    /**
+     * Removes and returns the next element. Must only be called by the
+     * consumer.
+     *
+     * @return The next element, or null if this buffer is empty.
+     */
+    public T poll() {
+        final T element = peek();
+        if (element == null)
+            return null;
+        ELEMENTS.set(elements, (int) head & mask, null);
+        HEAD.setRelease(this, head + 1);
+        return element;
+    }
+
+    /**
+     * Removes up to a specified amount of elements, handing each to an
+     * action. The consumer's sequence is published once for the whole batch.
+     * Must only be called by the consumer.
+     *
+     * @param action The action.
+     * @param limit The maximum amount of elements to remove.
+     * @return The amount of elements removed.
+     */
+    @SuppressWarnings("unchecked")
+    public int drain(Consumer<? super T> action, int limit) {
+        final long head = this.head;
+        long available = tailCache - head;
+        if (available < limit) {
+            tailCache = (long) TAIL.getAcquire(this);
+            available = tailCache - head;
+        }
+        final int count = (int) Math.min(available, limit);
+        for (int index = 0; index < count; index++) {
+            final int offset = (int) (head + index) & mask;
+            final T element = (T) ELEMENTS.get(elements, offset);
+            ELEMENTS.set(elements, offset, null);
+            action.accept(element);
+        }
+        if (count > 0)
+            HEAD.setRelease(this, head + count);
+        return count;
+    }
+
+    /**
+     * Removes every element currently in this buffer. Must only be called by
+     * the consumer.
+     *
+     * @param action The action.
+     * @return The amount of elements removed.
+     */
+    public int drain(Consumer<? super T> action) {
+        return drain(action, elements.length);
+    }
+
+    /**
+     * Returns an estimate of the amount of elements in this buffer. The value
+     * is exact when called by the consumer while the producer is idle.
+     *
+     * @return The returned amount.
+     */
+    public int size() {
+        final long size = (long) TAIL.getAcquire(this) - (long) HEAD.getAcquire(this);
+        return (int) Math.max(0, Math.min(size, elements.length));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return elements.length;
+    }
+
+    public OverflowPolicy<T> getPolicy() {
+        return policy;
+    }
+
+    public void setPolicy(OverflowPolicy<T> policy) {
+        this.policy = policy;
+    }
+}
+
+/**
+ * Padding that keeps the consumer's sequence off of the cache line of any
+ * preceding object header or field.
+ */
+abstract class SpscRingBufferPadding {
+
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+}
+
+/**
+ * The fields written by the consumer.
+ */
+abstract class SpscRingBufferConsumerFields extends SpscRingBufferPadding {
+
+    /**
+     * The sequence of the next element to be removed.
+     */
+    protected volatile long head;
+
+    /**
+     * The consumer's last observed value of the producer's sequence.
+     */
+    protected long tailCache;
+}
+
+/**
+ * Padding that separates the consumer's fields from the producer's.
+ */
+abstract class SpscRingBufferSeparator extends SpscRingBufferConsumerFields {
+
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+/**
+ * The fields written by the producer.
+ */
+abstract class SpscRingBufferProducerFields extends SpscRingBufferSeparator {
+
+    /**
+     * The sequence of the next element to be inserted.
+     */
+    protected volatile long tail;
+
+    /**
+     * The producer's last observed value of the consumer's sequence.
+     */
+    protected long headCache;
+}